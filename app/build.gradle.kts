@@ -1,5 +1,6 @@
 plugins {
     alias(libs.plugins.android.application)
+    alias(libs.plugins.baselineprofile)
     id("com.google.gms.google-services")
 }
 
@@ -32,6 +33,20 @@ android {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
+
+    // benchmarkRelease and nonMinifiedRelease are added by the baselineprofile plugin for
+    // :benchmark; both talk to the Firebase emulators and export the screens it launches
+    listOf("benchmarkRelease", "nonMinifiedRelease").forEach { name ->
+        sourceSets.maybeCreate(name).apply {
+            manifest.srcFile("src/benchmark/AndroidManifest.xml")
+            res.srcDir("src/benchmark/res")
+        }
+    }
+}
+
+baselineProfile {
+    // Profiles are generated on demand and checked in under src/release/generated
+    automaticGenerationDuringBuild = false
 }
 
 dependencies {
@@ -55,4 +70,11 @@ dependencies {
     // UI
     implementation(libs.recyclerview)
     implementation(libs.gson)
+
+    // Background sync
+    implementation(libs.work.runtime)
+
+    // Installs the Baseline Profile on devices without Play Store profile delivery
+    implementation(libs.profileinstaller)
+    baselineProfile(project(":benchmark"))
 }
\ No newline at end of file
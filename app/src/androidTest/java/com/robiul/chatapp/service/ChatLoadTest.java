@@ -0,0 +1,377 @@
+package com.robiul.chatapp.service;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Debug;
+import android.os.SystemClock;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.MemoryCacheSettings;
+import com.google.firebase.firestore.WriteBatch;
+import com.robiul.chatapp.data.MessageSource;
+import com.robiul.chatapp.models.ChatMessage;
+import com.robiul.chatapp.models.MessageDelta;
+import com.robiul.chatapp.models.User;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Load run of the ChatManager data path against the Firestore and Auth emulators.
+ * Seeds N chats of M messages for a fresh signed-in user, then measures:
+ *  - time to the first messages when opening each chat, cold and with a warm listener
+ *  - delivery latency and throughput while messages fan out to every open chat
+ *  - send latency, from sendMessage to the message reaching another client
+ *  - Java and native heap at each stage
+ *
+ *   firebase emulators:exec --only firestore,auth "./gradlew connectedAndroidTest \
+ *       -Pandroid.testInstrumentationRunnerArguments.class=com.robiul.chatapp.service.ChatLoadTest"
+ *
+ * Sizes and budgets can be overridden with runner arguments (users, messagesPerChat,
+ * sends, fanOutMessages, budgetSendP90Ms, budgetColdOpenP90Ms, budgetWarmOpenP90Ms).
+ * The report is written to files/load/chat-load-report.json in the app's external
+ * files directory and logged under the ChatLoad tag; runs fail when a budget is missed.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ChatLoadTest {
+    // The host machine as seen from an Android emulator
+    private static final String EMULATOR_HOST = "10.0.2.2";
+    private static final int FIRESTORE_PORT = 8080;
+    private static final int AUTH_PORT = 9099;
+    private static final long TIMEOUT_S = 60;
+    private static final String FAN_OUT_PREFIX = "fan_";
+
+    private static boolean emulatorsConfigured = false;
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    private final LoadReport report = new LoadReport();
+    private final List<MessageSource.Registration> registrations = new ArrayList<>();
+    private final Set<String> fanOutSeen = ConcurrentHashMap.newKeySet();
+    // Set while a fan-out is being counted
+    private volatile CountDownLatch fanOutDelivered;
+    private Context context;
+    private FirebaseFirestore writer;
+    private ChatManager chatManager;
+    private String me;
+    private List<String> others;
+
+    private int users;
+    private int messagesPerChat;
+    private int sends;
+    private int fanOutMessages;
+
+    @Before
+    public void setUp() throws Exception {
+        Bundle args = InstrumentationRegistry.getArguments();
+        users = intArg(args, "users", 10);
+        messagesPerChat = intArg(args, "messagesPerChat", 200);
+        sends = intArg(args, "sends", 30);
+        fanOutMessages = intArg(args, "fanOutMessages", 200);
+
+        context = instrumentation.getTargetContext();
+        configureEmulators();
+        writer = namedClient("load-writer");
+
+        // A fresh user per run keeps runs independent of emulator and on-device state
+        String run = UUID.randomUUID().toString().substring(0, 8);
+        FirebaseAuth auth = FirebaseAuth.getInstance();
+        auth.signOut();
+        Tasks.await(auth.createUserWithEmailAndPassword("load-" + run + "@example.com", "load-test-password"),
+                TIMEOUT_S, TimeUnit.SECONDS);
+        me = auth.getCurrentUser().getUid();
+        instrumentation.runOnMainSync(() -> {
+            chatManager = ChatManager.getInstance(context);
+            chatManager.setSendCoalescing(false);
+        });
+
+        others = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            others.add("load_" + run + "_" + i);
+        }
+        long start = SystemClock.elapsedRealtime();
+        seed();
+        report.put("seed.ms", SystemClock.elapsedRealtime() - start);
+        report.put("params.users", users);
+        report.put("params.messagesPerChat", messagesPerChat);
+        report.put("params.sends", sends);
+        report.put("params.fanOutMessages", fanOutMessages);
+        report.put("device.model", Build.MODEL);
+        report.put("device.sdk", Build.VERSION.SDK_INT);
+    }
+
+    // The app's default clients can only be pointed at the emulators once per process
+    private static synchronized void configureEmulators() {
+        if (emulatorsConfigured) return;
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        db.useEmulator(EMULATOR_HOST, FIRESTORE_PORT);
+        db.setFirestoreSettings(new FirebaseFirestoreSettings.Builder()
+                .setLocalCacheSettings(MemoryCacheSettings.newBuilder().build())
+                .build());
+        FirebaseAuth.getInstance().useEmulator(EMULATOR_HOST, AUTH_PORT);
+        emulatorsConfigured = true;
+    }
+
+    // Stands in for the other users' devices
+    private FirebaseFirestore namedClient(String name) {
+        FirebaseApp app;
+        try {
+            app = FirebaseApp.getInstance(name);
+        } catch (IllegalStateException e) {
+            app = FirebaseApp.initializeApp(context, FirebaseApp.getInstance().getOptions(), name);
+            FirebaseFirestore db = FirebaseFirestore.getInstance(app);
+            db.useEmulator(EMULATOR_HOST, FIRESTORE_PORT);
+            db.setFirestoreSettings(new FirebaseFirestoreSettings.Builder()
+                    .setLocalCacheSettings(MemoryCacheSettings.newBuilder().build())
+                    .build());
+        }
+        return FirebaseFirestore.getInstance(app);
+    }
+
+    private void seed() throws Exception {
+        Batches batches = new Batches();
+        for (int i = 0; i < users; i++) {
+            String other = others.get(i);
+            User user = new User(other, other + "@example.com", "Load User " + i);
+            batches.set(writer.collection("users").document(other), UserDirectory.toDocument(user));
+
+            String chatId = ChatManager.generateChatId(me, other);
+            long base = System.currentTimeMillis() - messagesPerChat * 1000L;
+            for (int m = 0; m < messagesPerChat; m++) {
+                // Alternate senders like a real conversation
+                boolean mine = m % 2 == 0;
+                ChatMessage message = new ChatMessage(mine ? me : other, mine ? other : me, "seed " + m);
+                message.setMessageId(chatId + "_seed_" + m);
+                message.setChatId(chatId);
+                message.setTimestamp(base + m * 1000L);
+                batches.set(writer.collection("messages").document(message.getMessageId()),
+                        MessageBatchWriter.toDocument(message));
+            }
+        }
+        batches.commit();
+    }
+
+    @Test
+    public void chatDataPathUnderLoad() throws Exception {
+        recordHeap("heap.seeded");
+
+        openAllChats();
+        recordHeap("heap.listening");
+
+        fanOut();
+        measureSends();
+        reopenWarm();
+        recordHeap("heap.after");
+        report.put("listeners", chatManager.getListenerMetrics().toString());
+
+        File dir = new File(context.getExternalFilesDir(null), "load");
+        report.write(new File(dir, "chat-load-report.json"));
+
+        Bundle args = InstrumentationRegistry.getArguments();
+        assertBudget("send.latency_ms", intArg(args, "budgetSendP90Ms", 1500));
+        assertBudget("open.cold_ms", intArg(args, "budgetColdOpenP90Ms", 3000));
+        assertBudget("open.warm_ms", intArg(args, "budgetWarmOpenP90Ms", 250));
+    }
+
+    @After
+    public void tearDown() {
+        instrumentation.runOnMainSync(() -> {
+            for (MessageSource.Registration registration : registrations) {
+                registration.remove();
+            }
+        });
+        registrations.clear();
+        FirebaseAuth.getInstance().signOut();
+    }
+
+    // Cold open of every chat, one after another; the listeners stay open for the fan-out
+    private void openAllChats() throws Exception {
+        for (String other : others) {
+            registrations.add(open(other, "open.cold_ms"));
+        }
+    }
+
+    // Every chat lingers after its screen goes away, so a reopen should not wait on the network
+    private void reopenWarm() throws Exception {
+        for (int i = 0; i < others.size(); i++) {
+            MessageSource.Registration previous = registrations.get(i);
+            instrumentation.runOnMainSync(previous::remove);
+            registrations.set(i, open(others.get(i), "open.warm_ms"));
+        }
+    }
+
+    private MessageSource.Registration open(String other, String metric) throws Exception {
+        CountDownLatch firstMessages = new CountDownLatch(1);
+        AtomicLong openedAt = new AtomicLong();
+        AtomicReference<MessageSource.Registration> registration = new AtomicReference<>();
+        ChatManager.MessagesCallback callback = new ChatManager.MessagesCallback() {
+            @Override
+            public void onMessagesChanged(MessageDelta delta) {
+                if (!delta.getAdded().isEmpty() && firstMessages.getCount() > 0) {
+                    report.sample(metric, SystemClock.elapsedRealtime() - openedAt.get());
+                    firstMessages.countDown();
+                }
+                onFanOutDelta(delta);
+            }
+
+            @Override
+            public void onError(String error) {
+                fail(error);
+            }
+        };
+        instrumentation.runOnMainSync(() -> {
+            openedAt.set(SystemClock.elapsedRealtime());
+            registration.set(chatManager.getMessages(other, callback));
+        });
+        assertTrue("No messages for " + other, firstMessages.await(TIMEOUT_S, TimeUnit.SECONDS));
+        return registration.get();
+    }
+
+    // Callbacks run on the main thread; only the first delivery of each fan-out message counts
+    private void onFanOutDelta(MessageDelta delta) {
+        CountDownLatch delivered = fanOutDelivered;
+        if (delivered == null) return;
+        long now = System.currentTimeMillis();
+        for (ChatMessage message : delta.getAdded()) {
+            if (message.getMessageId().startsWith(FAN_OUT_PREFIX) && fanOutSeen.add(message.getMessageId())) {
+                report.sample("fanout.delivery_ms", now - message.getTimestamp());
+                delivered.countDown();
+            }
+        }
+    }
+
+    // Other users write into every open chat at once
+    private void fanOut() throws Exception {
+        fanOutDelivered = new CountDownLatch(fanOutMessages);
+        long start = SystemClock.elapsedRealtime();
+        for (int i = 0; i < fanOutMessages; i++) {
+            String other = others.get(i % others.size());
+            ChatMessage message = new ChatMessage(other, me, "fan-out " + i);
+            message.setMessageId(FAN_OUT_PREFIX + UUID.randomUUID());
+            message.setChatId(ChatManager.generateChatId(me, other));
+            message.setTimestamp(System.currentTimeMillis());
+            writer.collection("messages").document(message.getMessageId()).set(MessageBatchWriter.toDocument(message));
+        }
+        assertTrue("Fan-out incomplete", fanOutDelivered.await(TIMEOUT_S, TimeUnit.SECONDS));
+        long elapsed = Math.max(1, SystemClock.elapsedRealtime() - start);
+        fanOutDelivered = null;
+        report.put("fanout.ms", elapsed);
+        report.put("fanout.messages_per_s", fanOutMessages * 1000.0 / elapsed);
+    }
+
+    // One message at a time, timed until a second client sees it on the server
+    private void measureSends() throws Exception {
+        String other = others.get(0);
+        String chatId = ChatManager.generateChatId(me, other);
+        Map<String, Long> arrivals = new ConcurrentHashMap<>();
+        Semaphore arrived = new Semaphore(0);
+        MessageSource.Registration receiver = new FirestoreMessageSource(namedClient("load-reader"),
+                Executors.newSingleThreadExecutor(), Runnable::run)
+                .listen(chatId, System.currentTimeMillis() - 1, sends, new MessageSource.Listener() {
+                    @Override
+                    public void onDelta(MessageDelta delta) {
+                        long now = SystemClock.elapsedRealtime();
+                        for (ChatMessage message : delta.getAdded()) {
+                            if (arrivals.putIfAbsent(message.getMessageId(), now) == null) arrived.release();
+                        }
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        fail(error);
+                    }
+                });
+
+        try {
+            for (int i = 0; i < sends; i++) {
+                AtomicLong sentAt = new AtomicLong();
+                AtomicReference<ChatMessage> sent = new AtomicReference<>();
+                int n = i;
+                instrumentation.runOnMainSync(() -> {
+                    sentAt.set(SystemClock.elapsedRealtime());
+                    sent.set(chatManager.sendMessage(other, "load send " + n));
+                });
+                String id = sent.get().getMessageId();
+                long deadline = SystemClock.elapsedRealtime() + TIMEOUT_S * 1000;
+                while (!arrivals.containsKey(id)) {
+                    long left = deadline - SystemClock.elapsedRealtime();
+                    assertTrue("Send " + n + " never arrived",
+                            left > 0 && arrived.tryAcquire(left, TimeUnit.MILLISECONDS));
+                }
+                report.sample("send.latency_ms", arrivals.get(id) - sentAt.get());
+            }
+        } finally {
+            receiver.remove();
+        }
+    }
+
+    private void recordHeap(String key) throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 2; i++) {
+            runtime.gc();
+            Thread.sleep(100);
+        }
+        report.put(key + ".java_kb", (runtime.totalMemory() - runtime.freeMemory()) / 1024);
+        report.put(key + ".native_kb", Debug.getNativeHeapAllocatedSize() / 1024);
+    }
+
+    private void assertBudget(String metric, long budgetMs) {
+        long p90 = report.percentile(metric, 90);
+        assertTrue(metric + " p90 " + p90 + " ms over budget " + budgetMs + " ms", p90 <= budgetMs);
+    }
+
+    private static int intArg(Bundle args, String key, int fallback) {
+        String value = args.getString(key);
+        return value != null ? Integer.parseInt(value) : fallback;
+    }
+
+    // Groups seed writes into batches under Firestore's 500-write cap
+    private class Batches {
+        private static final int MAX_WRITES = 500;
+        private final List<Task<Void>> commits = new ArrayList<>();
+        private WriteBatch batch = writer.batch();
+        private int writes = 0;
+
+        void set(DocumentReference document, Map<String, Object> data) {
+            batch.set(document, data);
+            if (++writes == MAX_WRITES) {
+                commits.add(batch.commit());
+                batch = writer.batch();
+                writes = 0;
+            }
+        }
+
+        void commit() throws Exception {
+            if (writes > 0) commits.add(batch.commit());
+            Tasks.await(Tasks.whenAll(commits), TIMEOUT_S, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.robiul.chatapp.service;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.MemoryCacheSettings;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+import com.robiul.chatapp.data.MessageSource;
+import com.robiul.chatapp.models.ChatMessage;
+import com.robiul.chatapp.models.MessageDelta;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the app's message and inbox queries against the Firestore emulator and
+ * checks each open reads one page, not the whole thread. Start the emulator
+ * from the project root first:
+ *
+ *   firebase emulators:exec --only firestore "./gradlew connectedAndroidTest"
+ *
+ * The emulator does not enforce composite indexes; firestore.indexes.json is
+ * what makes these queries valid in production.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FirestoreQueriesEmulatorTest {
+    // The host machine as seen from an Android emulator
+    private static final String EMULATOR_HOST = "10.0.2.2";
+    private static final int EMULATOR_PORT = 8080;
+    private static final int THREAD_SIZE = 1000;
+    private static final int PAGE_SIZE = 50;
+    private static final long TIMEOUT_S = 30;
+
+    // Separate clients so the reader starts with an empty cache and every document comes from the server
+    private static FirebaseFirestore writer;
+    private static FirebaseFirestore reader;
+
+    @BeforeClass
+    public static void connectToEmulator() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        FirebaseApp app = FirebaseApp.initializeApp(context);
+        writer = emulatorClient(FirebaseApp.initializeApp(context, app.getOptions(), "emulator-writer"));
+        reader = emulatorClient(FirebaseApp.initializeApp(context, app.getOptions(), "emulator-reader"));
+    }
+
+    private static FirebaseFirestore emulatorClient(FirebaseApp app) {
+        FirebaseFirestore db = FirebaseFirestore.getInstance(app);
+        db.useEmulator(EMULATOR_HOST, EMULATOR_PORT);
+        db.setFirestoreSettings(new FirebaseFirestoreSettings.Builder()
+                .setLocalCacheSettings(MemoryCacheSettings.newBuilder().build())
+                .build());
+        return db;
+    }
+
+    private static ChatMessage message(String chatId, String messageId, long timestamp) {
+        ChatMessage message = new ChatMessage("alice", "bob", "message " + messageId);
+        message.setMessageId(messageId);
+        message.setChatId(chatId);
+        message.setTimestamp(timestamp);
+        return message;
+    }
+
+    private static void write(ChatMessage message) throws Exception {
+        Tasks.await(writer.collection("messages").document(message.getMessageId())
+                .set(MessageBatchWriter.toDocument(message)), TIMEOUT_S, TimeUnit.SECONDS);
+    }
+
+    private static String seedThread(int size) throws Exception {
+        String chatId = "emulator_" + UUID.randomUUID();
+        WriteBatch batch = writer.batch();
+        for (int i = 0; i < size; i++) {
+            ChatMessage message = message(chatId, chatId + "_" + i, 1_000_000L + i);
+            batch.set(writer.collection("messages").document(message.getMessageId()), MessageBatchWriter.toDocument(message));
+            // Batches are capped at 500 writes
+            if ((i + 1) % 500 == 0) {
+                Tasks.await(batch.commit(), TIMEOUT_S, TimeUnit.SECONDS);
+                batch = writer.batch();
+            }
+        }
+        Tasks.await(batch.commit(), TIMEOUT_S, TimeUnit.SECONDS);
+        return chatId;
+    }
+
+    // First snapshot of a live listen through the app's message source
+    private static MessageDelta firstDelta(String chatId, long afterSyncedAt) throws Exception {
+        FirestoreMessageSource source = new FirestoreMessageSource(reader,
+                Executors.newSingleThreadExecutor(), Runnable::run);
+        CountDownLatch received = new CountDownLatch(1);
+        AtomicReference<MessageDelta> first = new AtomicReference<>();
+        AtomicReference<String> failure = new AtomicReference<>();
+        MessageSource.Registration registration = source.listen(chatId, afterSyncedAt, PAGE_SIZE,
+                new MessageSource.Listener() {
+                    @Override
+                    public void onDelta(MessageDelta delta) {
+                        if (first.compareAndSet(null, delta)) received.countDown();
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        failure.set(error);
+                        received.countDown();
+                    }
+                });
+        assertTrue(received.await(TIMEOUT_S, TimeUnit.SECONDS));
+        registration.remove();
+        assertNull(failure.get());
+        return first.get();
+    }
+
+    @Test
+    public void openingAChatReadsOnePage() throws Exception {
+        String chatId = seedThread(THREAD_SIZE);
+
+        // Newest page only, already in order
+        List<ChatMessage> added = firstDelta(chatId, 0).getAdded();
+        assertEquals(PAGE_SIZE, added.size());
+        assertEquals(chatId + "_" + (THREAD_SIZE - PAGE_SIZE), added.get(0).getMessageId());
+        assertEquals(chatId + "_" + (THREAD_SIZE - 1), added.get(PAGE_SIZE - 1).getMessageId());
+    }
+
+    // Sync point after a first open, as MessageSync keeps it
+    private static long newestSyncedAt(MessageDelta delta) {
+        long newest = 0;
+        for (ChatMessage message : delta.getAdded()) newest = Math.max(newest, message.getSyncedAt());
+        return newest;
+    }
+
+    @Test
+    public void reopeningAfterSyncReadsOnlyNewMessages() throws Exception {
+        String chatId = seedThread(THREAD_SIZE);
+        long syncedUpTo = newestSyncedAt(firstDelta(chatId, 0));
+        assertTrue(syncedUpTo > 0);
+
+        write(message(chatId, chatId + "_new1", 1_000_000L + THREAD_SIZE));
+        write(message(chatId, chatId + "_new2", 1_000_000L + THREAD_SIZE + 1));
+
+        assertEquals(2, firstDelta(chatId, syncedUpTo).getAdded().size());
+    }
+
+    @Test
+    public void lateMessageWithOldTimestampIsInTheDelta() throws Exception {
+        String chatId = seedThread(THREAD_SIZE);
+        long syncedUpTo = newestSyncedAt(firstDelta(chatId, 0));
+
+        // Sender clock far behind everything already synced
+        write(message(chatId, chatId + "_late", 1_000_000L + 10));
+
+        List<ChatMessage> added = firstDelta(chatId, syncedUpTo).getAdded();
+        assertEquals(1, added.size());
+        assertEquals(chatId + "_late", added.get(0).getMessageId());
+    }
+
+    // One older page through the app's message source, oldest first
+    private static List<ChatMessage> olderPage(String chatId, long beforeTimestamp, String beforeMessageId)
+            throws Exception {
+        FirestoreMessageSource source = new FirestoreMessageSource(reader,
+                Executors.newSingleThreadExecutor(), Runnable::run);
+
+        CountDownLatch fetched = new CountDownLatch(1);
+        List<ChatMessage> page = new ArrayList<>();
+        AtomicReference<String> failure = new AtomicReference<>();
+        source.fetchBefore(chatId, beforeTimestamp, beforeMessageId, PAGE_SIZE, new MessageSource.FetchCallback() {
+            @Override
+            public void onFetched(List<ChatMessage> messages) {
+                page.addAll(messages);
+                fetched.countDown();
+            }
+
+            @Override
+            public void onError(String error) {
+                failure.set(error);
+                fetched.countDown();
+            }
+        });
+        assertTrue(fetched.await(TIMEOUT_S, TimeUnit.SECONDS));
+        assertNull(failure.get());
+        return page;
+    }
+
+    @Test
+    public void olderPageReadsOnePage() throws Exception {
+        String chatId = seedThread(THREAD_SIZE);
+
+        List<ChatMessage> page = olderPage(chatId, 1_000_000L + 500, chatId + "_500");
+
+        assertEquals(PAGE_SIZE, page.size());
+        assertEquals(chatId + "_450", page.get(0).getMessageId());
+        assertEquals(chatId + "_499", page.get(PAGE_SIZE - 1).getMessageId());
+    }
+
+    @Test
+    public void olderPagesKeepMessagesSharingTheBoundaryMillisecond() throws Exception {
+        String chatId = "emulator_" + UUID.randomUUID();
+        // More messages in one millisecond than fit in a page, as a batched send can write
+        WriteBatch batch = writer.batch();
+        for (int i = 0; i < PAGE_SIZE + 10; i++) {
+            ChatMessage message = message(chatId, String.format("%s_%03d", chatId, i), 1_000_000L);
+            batch.set(writer.collection("messages").document(message.getMessageId()), MessageBatchWriter.toDocument(message));
+        }
+        Tasks.await(batch.commit(), TIMEOUT_S, TimeUnit.SECONDS);
+
+        List<ChatMessage> first = firstDelta(chatId, 0).getAdded();
+        assertEquals(PAGE_SIZE, first.size());
+        ChatMessage oldest = first.get(0);
+        List<ChatMessage> older = olderPage(chatId, oldest.getTimestamp(), oldest.getMessageId());
+
+        // The rest of the millisecond, not nothing
+        assertEquals(10, older.size());
+        assertEquals(String.format("%s_%03d", chatId, 0), older.get(0).getMessageId());
+        assertEquals(String.format("%s_%03d", chatId, 9), older.get(9).getMessageId());
+    }
+
+    @Test
+    public void inboxReadsOnePageNewestFirst() throws Exception {
+        String userId = "emulator_" + UUID.randomUUID();
+        WriteBatch batch = writer.batch();
+        for (int i = 0; i < 60; i++) {
+            Map<String, Object> chat = new HashMap<>();
+            chat.put("participants", Arrays.asList(userId, "other" + i));
+            chat.put("lastMessage", "hello " + i);
+            chat.put("lastMessageTime", 1_000_000L + i);
+            batch.set(writer.collection("chats").document(userId + "_" + i), chat);
+        }
+        Tasks.await(batch.commit(), TIMEOUT_S, TimeUnit.SECONDS);
+
+        QuerySnapshot inbox = Tasks.await(ChatManager.conversationsQuery(reader, userId, ChatManager.DEFAULT_INBOX_PAGE_SIZE)
+                .get(Source.SERVER), TIMEOUT_S, TimeUnit.SECONDS);
+
+        assertEquals(ChatManager.DEFAULT_INBOX_PAGE_SIZE, inbox.size());
+        assertEquals(userId + "_59", inbox.getDocuments().get(0).getId());
+    }
+
+    @Test
+    public void inboxPagesKeepChatsSharingTheBoundaryTime() throws Exception {
+        String userId = "emulator_" + UUID.randomUUID();
+        int chats = ChatManager.DEFAULT_INBOX_PAGE_SIZE + 10;
+        WriteBatch batch = writer.batch();
+        for (int i = 0; i < chats; i++) {
+            Map<String, Object> chat = new HashMap<>();
+            chat.put("participants", Arrays.asList(userId, "other" + i));
+            chat.put("lastMessage", "hello " + i);
+            chat.put("lastMessageTime", 1_000_000L);
+            batch.set(writer.collection("chats").document(userId + "_" + (100 + i)), chat);
+        }
+        Tasks.await(batch.commit(), TIMEOUT_S, TimeUnit.SECONDS);
+
+        QuerySnapshot first = Tasks.await(ChatManager.conversationsQuery(reader, userId, ChatManager.DEFAULT_INBOX_PAGE_SIZE)
+                .get(Source.SERVER), TIMEOUT_S, TimeUnit.SECONDS);
+        DocumentSnapshot last = first.getDocuments().get(first.size() - 1);
+        QuerySnapshot second = Tasks.await(ChatManager.conversationsQuery(reader, userId, ChatManager.DEFAULT_INBOX_PAGE_SIZE)
+                .startAfter(last.getLong("lastMessageTime"), last.getId())
+                .get(Source.SERVER), TIMEOUT_S, TimeUnit.SECONDS);
+
+        assertEquals(ChatManager.DEFAULT_INBOX_PAGE_SIZE, first.size());
+        assertEquals(10, second.size());
+        assertEquals(userId + "_" + (100 + chats - 1), first.getDocuments().get(0).getId());
+        assertEquals(userId + "_100", second.getDocuments().get(second.size() - 1).getId());
+    }
+}
@@ -0,0 +1,81 @@
+package com.robiul.chatapp.service;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Samples and figures from one load run, written as flat JSON with sorted keys so runs diff cleanly
+class LoadReport {
+    private static final String TAG = "ChatLoad";
+
+    private final Map<String, List<Long>> samples = new TreeMap<>();
+    private final Map<String, Object> values = new TreeMap<>();
+
+    synchronized void sample(String metric, long value) {
+        List<Long> list = samples.get(metric);
+        if (list == null) {
+            list = new ArrayList<>();
+            samples.put(metric, list);
+        }
+        list.add(value);
+    }
+
+    synchronized void put(String key, Object value) {
+        values.put(key, value);
+    }
+
+    synchronized long percentile(String metric, int percent) {
+        List<Long> list = samples.get(metric);
+        if (list == null || list.isEmpty()) return -1;
+        List<Long> sorted = new ArrayList<>(list);
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(percent / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index));
+    }
+
+    synchronized String toJson() {
+        Map<String, Object> all = new TreeMap<>(values);
+        for (Map.Entry<String, List<Long>> entry : samples.entrySet()) {
+            String metric = entry.getKey();
+            all.put(metric + ".count", entry.getValue().size());
+            all.put(metric + ".p50", percentile(metric, 50));
+            all.put(metric + ".p90", percentile(metric, 90));
+            all.put(metric + ".max", percentile(metric, 100));
+        }
+
+        StringBuilder json = new StringBuilder("{\n");
+        int i = 0;
+        for (Map.Entry<String, Object> entry : all.entrySet()) {
+            Object value = entry.getValue();
+            json.append("  \"").append(entry.getKey()).append("\": ");
+            if (value instanceof Number) {
+                json.append(value instanceof Double
+                        ? String.format(Locale.US, "%.1f", (Double) value) : value.toString());
+            } else {
+                json.append('"').append(value).append('"');
+            }
+            json.append(++i < all.size() ? ",\n" : "\n");
+        }
+        return json.append("}\n").toString();
+    }
+
+    void write(File file) throws IOException {
+        String json = toJson();
+        Log.i(TAG, "Report " + file + "\n" + json);
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(json);
+        }
+    }
+}
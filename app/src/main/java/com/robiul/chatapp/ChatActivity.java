@@ -1,6 +1,10 @@
 package com.robiul.chatapp;
 
+import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
 import android.view.View;
 import android.view.inputmethod.EditorInfo;
 import android.widget.Button;
@@ -9,33 +13,68 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.Lifecycle;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.robiul.chatapp.adapters.ChatViewPool;
 import com.robiul.chatapp.adapters.MessageAdapter;
+import com.robiul.chatapp.adapters.ScrollToLatestController;
 import com.robiul.chatapp.models.ChatMessage;
+import com.robiul.chatapp.models.MessageDelta;
+import com.robiul.chatapp.perf.FrameStats;
 import com.robiul.chatapp.service.ChatManager;
+import com.robiul.chatapp.service.ChatNotifications;
+import com.robiul.chatapp.service.PresenceManager;
 
+import java.util.Collections;
 import java.util.List;
 
 public class ChatActivity extends AppCompatActivity {
+    private static final String TAG = "ChatActivity";
+    // From onCreate to the first messages drawn; measured by ChatBenchmark
+    private static final String FIRST_MESSAGES_SECTION = "chat:firstMessages";
+    // Rows kept bound just off screen, so short scrolls back don't rebind
+    private static final int ITEM_VIEW_CACHE_SIZE = 10;
+
     private RecyclerView messagesRecyclerView;
     private EditText messageEditText;
     private Button sendButton;
     private TextView chatTitle;
+    private TextView newMessagesButton;
     private MessageAdapter messageAdapter;
+    private ScrollToLatestController scrollController;
     private ChatManager chatManager;
+    private FrameStats frameStats;
+    private ChatViewPool viewPool;
+    private long createdAtMs;
+    private boolean firstMessagesShown = false;
     private String otherUserId;
     private String otherUserName;
     private LinearLayoutManager layoutManager;
+    private String currentUserId;
+    private ListenerRegistration seenWatermarkRegistration;
+    // Where this screen's older pages continue from
+    private ChatManager.PageCursor olderPages;
+    private boolean loadingOlder = false;
+    // Cleared once a page comes back short
+    private boolean hasMoreOlder = true;
 
+    // Start fetching the previous page when this close to the top
+    private static final int LOAD_MORE_THRESHOLD = 5;
 
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        createdAtMs = SystemClock.uptimeMillis();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(FIRST_MESSAGES_SECTION, 0);
+        }
         setContentView(R.layout.activity_chat);
+        frameStats = new FrameStats(this, "ChatActivity");
 
         // Get other user ID from intent
         otherUserId = getIntent().getStringExtra("otherUserId");
@@ -49,6 +88,7 @@ public class ChatActivity extends AppCompatActivity {
 
         initViews();
         setupChat();
+        listenForReadReceipts();
 
 
     }
@@ -58,6 +98,7 @@ public class ChatActivity extends AppCompatActivity {
         messageEditText = findViewById(R.id.messageEditText);
         sendButton = findViewById(R.id.sendButton);
         chatTitle = findViewById(R.id.chatTitle);
+        newMessagesButton = findViewById(R.id.newMessagesButton);
 
         // Set chat title
         if (chatTitle != null) {
@@ -79,12 +120,32 @@ public class ChatActivity extends AppCompatActivity {
         layoutManager = new LinearLayoutManager(this);
         layoutManager.setStackFromEnd(true); // This is key for bottom alignment
         messagesRecyclerView.setLayoutManager(layoutManager);
+        messagesRecyclerView.setHasFixedSize(true);
+        messagesRecyclerView.setItemViewCacheSize(ITEM_VIEW_CACHE_SIZE);
+        // Bubbles come from the app-wide pool, pre-inflated or left by the last chat
+        viewPool = ChatViewPool.getInstance(this);
+        viewPool.attachMessages(messagesRecyclerView, layoutManager);
 
         FirebaseAuth auth = FirebaseAuth.getInstance();
-        String currentUserId = auth.getCurrentUser() != null ? auth.getCurrentUser().getUid() : "";
-        messageAdapter = new MessageAdapter(currentUserId);
+        currentUserId = auth.getCurrentUser() != null ? auth.getCurrentUser().getUid() : "";
+        messageAdapter = new MessageAdapter(currentUserId, viewPool);
         messagesRecyclerView.setAdapter(messageAdapter);
 
+        // Follows new messages while the user is at the bottom, counts them otherwise
+        scrollController = new ScrollToLatestController(messagesRecyclerView, layoutManager,
+                messageAdapter::isMessageRow, this::showUnseenCount);
+        newMessagesButton.setOnClickListener(v -> scrollController.scrollToLatest());
+
+        // Load older pages as the user scrolls up
+        messagesRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                if (dy < 0 && layoutManager.findFirstVisibleItemPosition() <= LOAD_MORE_THRESHOLD) {
+                    loadOlderMessages();
+                }
+            }
+        });
+
         sendButton.setOnClickListener(v -> sendMessage());
 
         // Send on enter key
@@ -98,27 +159,87 @@ public class ChatActivity extends AppCompatActivity {
     }
 
     private void setupChat() {
-        chatManager = new ChatManager();
+        chatManager = ChatManager.getInstance(this);
+        chatManager.setSendCoalescing(true);
+        chatManager.setChatPartnerName(otherUserId, otherUserName);
 
-        // Listen for messages
-        chatManager.getMessages(otherUserId, new ChatManager.MessagesCallback() {
+        // Listen for messages while the screen is started; the listener is shared and released on stop
+        olderPages = chatManager.getMessages(this, otherUserId, new ChatManager.MessagesCallback() {
             @Override
-            public void onMessagesReceived(List<ChatMessage> messages) {
-                messageAdapter.setMessages(messages);
-
-                // Auto-scroll to latest message
-                if (!messages.isEmpty()) {
-                    messagesRecyclerView.postDelayed(new Runnable() {
-                        @Override
-                        public void run() {
-                            messagesRecyclerView.smoothScrollToPosition(messages.size() - 1);
-                        }
-                    }, 100);
-                }
+            public void onMessagesChanged(MessageDelta delta) {
+                // Scrolling follows the inserted rows through scrollController
+                messageAdapter.applyDelta(delta, delta.getAdded().isEmpty() ? null : () -> onFirstMessagesShown());
+                markReceivedAsSeen(delta);
+            }
+
+            @Override
+            public void onError(String error) {
+                Toast.makeText(ChatActivity.this, "Error: " + error, Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private void showUnseenCount(int count) {
+        if (count == 0) {
+            newMessagesButton.setVisibility(View.GONE);
+        } else {
+            newMessagesButton.setText(count == 1 ? "1 new message" : count + " new messages");
+            newMessagesButton.setVisibility(View.VISIBLE);
+        }
+    }
+
+    // The first page is on screen; this is the chat's time to first useful frame
+    private void onFirstMessagesShown() {
+        if (firstMessagesShown) return;
+        firstMessagesShown = true;
+        messagesRecyclerView.post(() -> {
+            endFirstMessagesSection();
+            Log.d(TAG, "First messages drawn in " + (SystemClock.uptimeMillis() - createdAtMs)
+                    + " ms (" + viewPool.getStats() + ")");
+            reportFullyDrawn();
+        });
+    }
+
+    private void endFirstMessagesSection() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(FIRST_MESSAGES_SECTION, 0);
+        }
+    }
+
+    private void markReceivedAsSeen(MessageDelta delta) {
+        if (!getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.RESUMED)) return;
+
+        long newest = 0;
+        for (ChatMessage message : delta.getAdded()) {
+            if (!currentUserId.equals(message.getSenderId())) {
+                newest = Math.max(newest, message.getTimestamp());
+            }
+        }
+        if (newest > 0) {
+            chatManager.markChatSeen(otherUserId, newest);
+        }
+    }
+
+    private void listenForReadReceipts() {
+        seenWatermarkRegistration = chatManager.listenToSeenWatermark(otherUserId,
+                seenUpTo -> messageAdapter.setSeenWatermark(seenUpTo));
+    }
+
+    private void loadOlderMessages() {
+        if (loadingOlder || !hasMoreOlder) return;
+        loadingOlder = true;
+
+        chatManager.loadOlderMessages(olderPages, new ChatManager.OlderMessagesCallback() {
+            @Override
+            public void onOlderMessagesLoaded(List<ChatMessage> messages, boolean hasMore) {
+                loadingOlder = false;
+                hasMoreOlder = hasMore;
+                messageAdapter.prependMessages(messages);
             }
 
             @Override
             public void onError(String error) {
+                loadingOlder = false;
                 Toast.makeText(ChatActivity.this, "Error: " + error, Toast.LENGTH_SHORT).show();
             }
         });
@@ -127,18 +248,15 @@ public class ChatActivity extends AppCompatActivity {
     private void sendMessage() {
         String message = messageEditText.getText().toString().trim();
         if (!message.isEmpty()) {
-            chatManager.sendMessage(otherUserId, message);
+            ChatMessage pending = chatManager.sendMessage(otherUserId, message);
             messageEditText.setText("");
 
-            // Auto-scroll after sending message
-            messagesRecyclerView.postDelayed(new Runnable() {
-                @Override
-                public void run() {
-                    if (messageAdapter.getItemCount() > 0) {
-                        messagesRecyclerView.smoothScrollToPosition(messageAdapter.getItemCount() - 1);
-                    }
-                }
-            }, 200);
+            // Show it right away; the server echo will replace the pending row.
+            // Our own message is always scrolled to, even from far up the thread.
+            scrollController.followNextInsert();
+            if (pending != null) {
+                messageAdapter.applyDelta(MessageDelta.ofAdded(Collections.singletonList(pending)));
+            }
         } else {
             Toast.makeText(this, "Message cannot be empty", Toast.LENGTH_SHORT).show();
         }
@@ -150,15 +268,39 @@ public class ChatActivity extends AppCompatActivity {
         return true;
     }
 
-    // Optional: Auto-scroll when keyboard appears/disappears
+    @Override
+    protected void onPause() {
+        super.onPause();
+        PresenceManager.getInstance().onScreenPaused();
+        frameStats.stop();
+        // Don't leave coalesced messages waiting while the screen is away
+        if (chatManager != null) {
+            chatManager.flushPendingSends();
+            chatManager.flushReadReceipts();
+        }
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
-        // Scroll to bottom when activity resumes
-        messagesRecyclerView.postDelayed(() -> {
-            if (messageAdapter.getItemCount() > 0) {
-                messagesRecyclerView.smoothScrollToPosition(messageAdapter.getItemCount() - 1);
-            }
-        }, 300);
+        PresenceManager.getInstance().onScreenResumed();
+        frameStats.start();
+        // Pushes for this chat are on screen now
+        ChatNotifications.getInstance(this).clearChat(chatManager.getChatId(otherUserId));
+        // Anything that arrived while we were away is read now
+        long newestReceived = messageAdapter.getNewestReceivedTimestamp();
+        if (newestReceived > 0) {
+            chatManager.markChatSeen(otherUserId, newestReceived);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Closed before anything showed
+        if (!firstMessagesShown) endFirstMessagesSection();
+        if (seenWatermarkRegistration != null) {
+            seenWatermarkRegistration.remove();
+        }
     }
-}
\ No newline at end of file
+}
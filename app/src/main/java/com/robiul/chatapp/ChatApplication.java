@@ -0,0 +1,26 @@
+package com.robiul.chatapp;
+
+import android.app.Application;
+import android.util.Log;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+public class ChatApplication extends Application {
+    private static final String TAG = "ChatApplication";
+    // The host machine as seen from an Android emulator
+    private static final String EMULATOR_HOST = "10.0.2.2";
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Only the benchmark builds set this; clients must be pointed before their first use
+        if (getResources().getBoolean(R.bool.use_firebase_emulators)) {
+            FirebaseFirestore.getInstance().useEmulator(EMULATOR_HOST, 8080);
+            FirebaseAuth.getInstance().useEmulator(EMULATOR_HOST, 9099);
+            FirebaseDatabase.getInstance().useEmulator(EMULATOR_HOST, 9000);
+            Log.i(TAG, "Using Firebase emulators on " + EMULATOR_HOST);
+        }
+    }
+}
@@ -7,31 +7,61 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.PowerManager;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.provider.Settings;
 import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.Button;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.Task;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.messaging.FirebaseMessaging;
+import com.robiul.chatapp.adapters.ChatViewPool;
+import com.robiul.chatapp.adapters.ConversationsAdapter;
+import com.robiul.chatapp.models.ChatRoom;
+import com.robiul.chatapp.perf.StartupTasks;
+import com.robiul.chatapp.service.ChatManager;
+import com.robiul.chatapp.service.FcmTokenSync;
+import com.robiul.chatapp.service.PresenceManager;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity {
     private static final String TAG = "MainActivity";
+    private static final String STARTUP_TAG = "StartupTrace";
+    // Startup work that needs neither the main thread nor the first frame
+    private static final Executor STARTUP_EXECUTOR = Executors.newFixedThreadPool(2);
     private TextView tokenTextView, userInfoTextView;
     private Button usersButton, logoutButton, notificationsButton;
     private FirebaseAuth auth;
-    private FirebaseFirestore db;
+    private RecyclerView conversationsRecyclerView;
+    private TextView emptyConversations;
+    private Button loadMoreConversationsButton;
+    private ConversationsAdapter conversationsAdapter;
+    private ChatManager chatManager;
+    private ListenerRegistration conversationsRegistration;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private StartupTasks startup;
+    private boolean reportedFullyDrawn = false;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -40,7 +70,6 @@ public class MainActivity extends AppCompatActivity {
 
         // Initialize Firebase
         auth = FirebaseAuth.getInstance();
-        db = FirebaseFirestore.getInstance();
 
         // Check if user is logged in, if not redirect to login
         if (auth.getCurrentUser() == null) {
@@ -49,17 +78,68 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
 
-        initViews();
-        setupClickListeners();
-        updateUserInfo();
-        getFCMToken();
-        handleNotificationData(getIntent());
-
-        // FCM related setup
-        checkBatteryOptimization();
-        subscribeToTopics();
-        registerMessageReceiver();
-        checkPendingToken();
+        // Chat bubbles inflate in the background so opening a chat doesn't pay for them
+        ChatViewPool.getInstance(this).prewarm(this);
+
+        // Only what the first frame shows runs before it; FCM setup waits or runs alongside
+        startup = new StartupTasks(mainHandler::post, STARTUP_EXECUTOR, SystemClock::uptimeMillis, startupListener)
+                .add("initViews", StartupTasks.Kind.CRITICAL, this::initViews)
+                .add("setupClickListeners", StartupTasks.Kind.CRITICAL, this::setupClickListeners)
+                .add("updateUserInfo", StartupTasks.Kind.CRITICAL, this::updateUserInfo)
+                .add("loadConversations", StartupTasks.Kind.CRITICAL, this::loadConversations)
+                .add("handleNotificationData", StartupTasks.Kind.CRITICAL, () -> handleNotificationData(getIntent()))
+                .add("subscribeToTopics", StartupTasks.Kind.BACKGROUND, this::subscribeToTopics)
+                .add("checkPendingToken", StartupTasks.Kind.BACKGROUND, this::checkPendingToken)
+                .add("getFCMToken", StartupTasks.Kind.AFTER_FIRST_FRAME, this::getFCMToken)
+                .add("registerMessageReceiver", StartupTasks.Kind.AFTER_FIRST_FRAME, this::registerMessageReceiver)
+                .add("checkBatteryOptimization", StartupTasks.Kind.AFTER_FIRST_FRAME, this::checkBatteryOptimization);
+        startup.start();
+        onFirstDraw(startup::onFirstFrame);
+    }
+
+    // Runs action once, right after the first frame has been drawn
+    private void onFirstDraw(Runnable action) {
+        View decorView = getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            private boolean drawn;
+
+            @Override
+            public void onDraw() {
+                if (drawn) return;
+                drawn = true;
+                // Draw listeners can't be removed while they're being dispatched
+                mainHandler.post(() -> {
+                    decorView.getViewTreeObserver().removeOnDrawListener(this);
+                    action.run();
+                });
+            }
+        });
+    }
+
+    private final StartupTasks.Listener startupListener = new StartupTasks.Listener() {
+        @Override
+        public void onTaskStarted(String name) {
+            // Shows up as a slice in system traces and in the startup benchmark
+            Trace.beginSection("startup:" + name);
+        }
+
+        @Override
+        public void onTaskFinished(String name) {
+            Trace.endSection();
+        }
+
+        @Override
+        public void onComplete(StartupTasks.Report report) {
+            Log.i(STARTUP_TAG, "Startup of " + getAppVersion() + ": " + report);
+        }
+    };
+
+    private String getAppVersion() {
+        try {
+            return getPackageManager().getPackageInfo(getPackageName(), 0).versionName;
+        } catch (PackageManager.NameNotFoundException e) {
+            return "unknown";
+        }
     }
 
     private void initViews() {
@@ -68,6 +148,13 @@ public class MainActivity extends AppCompatActivity {
         usersButton = findViewById(R.id.usersButton);
         logoutButton = findViewById(R.id.logoutButton);
         notificationsButton = findViewById(R.id.notificationsButton);
+        conversationsRecyclerView = findViewById(R.id.conversationsRecyclerView);
+        emptyConversations = findViewById(R.id.emptyConversations);
+        loadMoreConversationsButton = findViewById(R.id.loadMoreConversationsButton);
+
+        conversationsAdapter = new ConversationsAdapter(auth.getCurrentUser().getUid(), this::openChat);
+        conversationsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        conversationsRecyclerView.setAdapter(conversationsAdapter);
     }
 
     private void setupClickListeners() {
@@ -87,6 +174,63 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
+    // Recent conversations from the chats collection, one small query instead of a user scan
+    private void loadConversations() {
+        chatManager = ChatManager.getInstance(this);
+        conversationsRegistration = chatManager.listenToConversations(ChatManager.DEFAULT_INBOX_PAGE_SIZE,
+                new ChatManager.ConversationsCallback() {
+                    @Override
+                    public void onConversationsChanged(List<ChatRoom> changed, List<ChatRoom> removed) {
+                        conversationsAdapter.applyChanges(changed, removed);
+                        updateConversationsState(conversationsAdapter.getItemCount()
+                                >= ChatManager.DEFAULT_INBOX_PAGE_SIZE);
+                        if (!reportedFullyDrawn) {
+                            // The inbox is usable from here: time to full display for cold starts
+                            reportedFullyDrawn = true;
+                            reportFullyDrawn();
+                        }
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        Log.e(TAG, "Failed to load conversations: " + error);
+                    }
+                });
+
+        loadMoreConversationsButton.setOnClickListener(v -> {
+            ChatRoom oldest = conversationsAdapter.getOldest();
+            if (oldest == null) return;
+            loadMoreConversationsButton.setEnabled(false);
+            chatManager.loadMoreConversations(oldest,
+                    ChatManager.DEFAULT_INBOX_PAGE_SIZE, new ChatManager.ConversationsPageCallback() {
+                        @Override
+                        public void onConversationsLoaded(List<ChatRoom> rooms, boolean hasMore) {
+                            loadMoreConversationsButton.setEnabled(true);
+                            conversationsAdapter.appendPage(rooms);
+                            updateConversationsState(hasMore);
+                        }
+
+                        @Override
+                        public void onError(String error) {
+                            loadMoreConversationsButton.setEnabled(true);
+                            Toast.makeText(MainActivity.this, "Error: " + error, Toast.LENGTH_SHORT).show();
+                        }
+                    });
+        });
+    }
+
+    private void updateConversationsState(boolean hasMore) {
+        emptyConversations.setVisibility(conversationsAdapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+        loadMoreConversationsButton.setVisibility(hasMore ? View.VISIBLE : View.GONE);
+    }
+
+    private void openChat(String otherUserId, String otherUserName) {
+        Intent intent = new Intent(this, ChatActivity.class);
+        intent.putExtra("otherUserId", otherUserId);
+        intent.putExtra("otherUserName", otherUserName);
+        startActivity(intent);
+    }
+
     private void updateUserInfo() {
         FirebaseUser currentUser = auth.getCurrentUser();
         if (currentUser != null) {
@@ -118,7 +262,7 @@ public class MainActivity extends AppCompatActivity {
                         }
 
                         tokenTextView.setText(displayToken);
-                        saveTokenToFirestore(token);
+                        FcmTokenSync.getInstance(MainActivity.this).onToken(token);
 
                         Toast.makeText(MainActivity.this, "FCM Token Updated", Toast.LENGTH_SHORT).show();
                     }
@@ -149,48 +293,13 @@ public class MainActivity extends AppCompatActivity {
                         }
 
                         tokenTextView.setText(token);
-                        saveTokenToFirestore(token);
+                        FcmTokenSync.getInstance(MainActivity.this).onToken(token);
 
                         Toast.makeText(MainActivity.this, "FCM Token Copied to Clipboard!", Toast.LENGTH_LONG).show();
                     }
                 });
     }
 
-    private void saveTokenToFirestore(String token) {
-        FirebaseUser currentUser = auth.getCurrentUser();
-        if (currentUser != null) {
-            db.collection("users").document(currentUser.getUid())
-                    .update("fcmToken", token)
-                    .addOnSuccessListener(aVoid -> {
-                        Log.d(TAG, "FCM token saved to Firestore");
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.e(TAG, "Failed to save FCM token to Firestore", e);
-                        // Try to create/update full user document
-                        updateUserDocumentWithToken(token, currentUser);
-                    });
-        }
-    }
-
-    private void updateUserDocumentWithToken(String token, FirebaseUser user) {
-        java.util.Map<String, Object> userData = new java.util.HashMap<>();
-        userData.put("fcmToken", token);
-        userData.put("email", user.getEmail());
-        userData.put("name", user.getDisplayName() != null ? user.getDisplayName() : user.getEmail());
-        userData.put("userId", user.getUid());
-        userData.put("lastSeen", com.google.firebase.Timestamp.now());
-        userData.put("isOnline", true);
-
-        db.collection("users").document(user.getUid())
-                .set(userData, com.google.firebase.firestore.SetOptions.merge())
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "User document created/updated with FCM token");
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Failed to create/update user document: " + e.getMessage());
-                });
-    }
-
     private void logoutUser() {
         new AlertDialog.Builder(this)
                 .setTitle("Logout")
@@ -207,8 +316,8 @@ public class MainActivity extends AppCompatActivity {
 
     private void performLogout() {
         // Clear online status and FCM token
-        updateUserOnlineStatus(false);
-        clearFCMTokenOnLogout();
+        PresenceManager.getInstance().signOut();
+        FcmTokenSync.getInstance(this).signOut();
 
         auth.signOut();
         Toast.makeText(this, "Logged out successfully", Toast.LENGTH_SHORT).show();
@@ -216,20 +325,6 @@ public class MainActivity extends AppCompatActivity {
         finish();
     }
 
-    private void clearFCMTokenOnLogout() {
-        FirebaseUser currentUser = auth.getCurrentUser();
-        if (currentUser != null) {
-            db.collection("users").document(currentUser.getUid())
-                    .update("fcmToken", "", "isOnline", false)
-                    .addOnSuccessListener(aVoid -> {
-                        Log.d(TAG, "FCM token cleared on logout");
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.e(TAG, "Failed to clear FCM token on logout", e);
-                    });
-        }
-    }
-
     private void handleNotificationData(Intent intent) {
         if (intent != null && intent.getExtras() != null) {
             Bundle extras = intent.getExtras();
@@ -344,37 +439,13 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void checkPendingToken() {
-        SharedPreferences prefs = getSharedPreferences("fcm_prefs", Context.MODE_PRIVATE);
-        String pendingToken = prefs.getString("pending_token", null);
-        if (pendingToken != null && auth.getCurrentUser() != null) {
-            saveTokenToFirestore(pendingToken);
-            prefs.edit().remove("pending_token").apply();
-            Log.d(TAG, "Pending FCM token updated after login");
-        }
-    }
-
-    private void updateUserOnlineStatus(boolean isOnline) {
-        FirebaseUser currentUser = auth.getCurrentUser();
-        if (currentUser != null) {
-            java.util.Map<String, Object> statusData = new java.util.HashMap<>();
-            statusData.put("isOnline", isOnline);
-            statusData.put("lastSeen", com.google.firebase.Timestamp.now());
-
-            db.collection("users").document(currentUser.getUid())
-                    .update(statusData)
-                    .addOnSuccessListener(aVoid -> {
-                        Log.d(TAG, "User status updated: " + (isOnline ? "Online" : "Offline"));
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.e(TAG, "Failed to update user status", e);
-                    });
-        }
+        FcmTokenSync.getInstance(this).syncPending();
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        updateUserOnlineStatus(true);
+        PresenceManager.getInstance().onScreenResumed();
         // Refresh user info when returning to app
         updateUserInfo();
     }
@@ -382,17 +453,22 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onPause() {
         super.onPause();
-        updateUserOnlineStatus(false);
+        PresenceManager.getInstance().onScreenPaused();
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        if (startup != null) {
+            startup.cancel();
+        }
+        if (conversationsRegistration != null) {
+            conversationsRegistration.remove();
+        }
         try {
             unregisterReceiver(chatMessageReceiver);
         } catch (Exception e) {
             Log.d(TAG, "Receiver already unregistered");
         }
-        updateUserOnlineStatus(false);
     }
 }
\ No newline at end of file
@@ -23,6 +23,7 @@ import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.auth.UserProfileChangeRequest;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.robiul.chatapp.models.User;
+import com.robiul.chatapp.service.UserDirectory;
 
 public class RegisterActivity extends AppCompatActivity {
 
@@ -187,7 +188,7 @@ public class RegisterActivity extends AppCompatActivity {
         );
 
         db.collection("users").document(firebaseUser.getUid())
-                .set(user)
+                .set(UserDirectory.toDocument(user))
                 .addOnSuccessListener(aVoid -> {
                     Log.d(TAG, "User saved to Firestore: " + name);
                     Toast.makeText(RegisterActivity.this, "Registration successful!", Toast.LENGTH_SHORT).show();
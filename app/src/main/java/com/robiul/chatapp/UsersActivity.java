@@ -2,7 +2,13 @@ package com.robiul.chatapp;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.util.Log;
 import android.view.View;
+import android.widget.EditText;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -12,20 +18,36 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
+import com.robiul.chatapp.adapters.ChatViewPool;
 import com.robiul.chatapp.adapters.UsersAdapter;
 import com.robiul.chatapp.models.User;
 import com.robiul.chatapp.service.ChatManager;
+import com.robiul.chatapp.service.PresenceManager;
+import com.robiul.chatapp.service.PresenceSubscriptions;
+import com.robiul.chatapp.service.UserDirectory;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class UsersActivity extends AppCompatActivity {
+    private static final String TAG = "UsersActivity";
     private RecyclerView usersRecyclerView;
     private List<User> users;
     private UsersAdapter usersAdapter;
     private ProgressBar progressBar;
     private ChatManager chatManager;
     private TextView emptyState;
+    private EditText searchEditText;
+    private UserDirectory userDirectory;
+    private boolean showingCachedPage = false;
+    private PresenceSubscriptions presenceSubscriptions;
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private final Runnable searchRunnable = this::startSearch;
+
+    private static final long SEARCH_DEBOUNCE_MS = 300;
+    private static final int LOAD_MORE_THRESHOLD = 5;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -40,38 +62,134 @@ public class UsersActivity extends AppCompatActivity {
             return;
         }
 
-        chatManager = new ChatManager();
+        chatManager = ChatManager.getInstance(this);
+        userDirectory = chatManager.newUserDirectory(UserDirectory.DEFAULT_PAGE_SIZE);
         initViews();
-        loadUsers();
+        setupSearch();
+        startSearch();
+        userDirectory.refreshChanged(changed -> usersAdapter.updateUsers(changed));
     }
 
     private void initViews() {
         usersRecyclerView = findViewById(R.id.usersRecyclerView);
         progressBar = findViewById(R.id.progressBar);
         emptyState = findViewById(R.id.emptyState);
+        searchEditText = findViewById(R.id.searchEditText);
 
         users = new ArrayList<>();
         usersAdapter = new UsersAdapter(users, this::onUserClicked);
-        usersRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        usersRecyclerView.setLayoutManager(layoutManager);
+        usersRecyclerView.setHasFixedSize(true);
+        ChatViewPool.getInstance(this).attachUsers(usersRecyclerView, layoutManager);
         usersRecyclerView.setAdapter(usersAdapter);
+        presenceSubscriptions = new PresenceSubscriptions(PresenceManager.getInstance(), usersAdapter::setPresence);
+
+        // Fetch the next page shortly before the end of the list
+        usersRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                if (dy > 0 && layoutManager.findLastVisibleItemPosition()
+                        >= usersAdapter.getItemCount() - LOAD_MORE_THRESHOLD) {
+                    loadNextPage();
+                }
+            }
+
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                // Rows flung past are never subscribed
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    updateVisiblePresence();
+                }
+            }
+        });
+    }
+
+    private void updateVisiblePresence() {
+        LinearLayoutManager layoutManager = (LinearLayoutManager) usersRecyclerView.getLayoutManager();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+
+        Set<String> visible = new HashSet<>();
+        if (first != RecyclerView.NO_POSITION) {
+            for (int i = first; i <= last && i < usersAdapter.getItemCount(); i++) {
+                visible.add(usersAdapter.getUser(i).getUserId());
+            }
+        }
+        presenceSubscriptions.setVisible(visible);
+    }
+
+    // Once the new rows are laid out
+    private void postVisiblePresence() {
+        usersRecyclerView.post(this::updateVisiblePresence);
+    }
+
+    private void setupSearch() {
+        searchEditText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                // Wait for typing to pause before querying
+                searchHandler.removeCallbacks(searchRunnable);
+                searchHandler.postDelayed(searchRunnable, SEARCH_DEBOUNCE_MS);
+            }
+        });
     }
-    // In UsersActivity, update the loadUsers method:
-    private void loadUsers() {
-        progressBar.setVisibility(View.VISIBLE);
-        emptyState.setVisibility(View.GONE);
 
-        chatManager.getAllUsers(new ChatManager.UsersCallback() {
+    private void startSearch() {
+        userDirectory.search(searchEditText.getText().toString());
+        usersAdapter.clear();
+        showingCachedPage = false;
+
+        // Cached first page renders instantly; the network page replaces it
+        userDirectory.loadCachedFirstPage(new UserDirectory.PageCallback() {
             @Override
-            public void onUsersReceived(List<User> usersList) {
+            public void onPageLoaded(List<User> page, boolean hasMore) {
+                if (usersAdapter.getItemCount() > 0 || page.isEmpty()) return;
                 progressBar.setVisibility(View.GONE);
+                usersAdapter.appendUsers(page);
+                showingCachedPage = true;
+                postVisiblePresence();
+            }
+
+            @Override
+            public void onError(String error) {}
+        });
+        loadNextPage();
+    }
+
+    private void loadNextPage() {
+        if (!userDirectory.hasMore()) return;
+        if (usersAdapter.getItemCount() == 0) {
+            progressBar.setVisibility(View.VISIBLE);
+        }
+        emptyState.setVisibility(View.GONE);
 
-                users.clear();
-                users.addAll(usersList);
-                usersAdapter.setUsers(users);
+        userDirectory.loadNextPage(new UserDirectory.PageCallback() {
+            @Override
+            public void onPageLoaded(List<User> page, boolean hasMore) {
+                progressBar.setVisibility(View.GONE);
+                if (showingCachedPage) {
+                    showingCachedPage = false;
+                    usersAdapter.setUsers(new ArrayList<>(page));
+                } else {
+                    usersAdapter.appendUsers(page);
+                }
+                postVisiblePresence();
 
-                if (users.isEmpty()) {
-                    emptyState.setVisibility(View.VISIBLE);
-                    emptyState.setText("No other users found");
+                if (usersAdapter.getItemCount() == 0) {
+                    if (hasMore) {
+                        // The page only held the current user; keep going
+                        loadNextPage();
+                    } else {
+                        emptyState.setVisibility(View.VISIBLE);
+                        emptyState.setText("No other users found");
+                    }
                 }
             }
 
@@ -125,6 +243,27 @@ public class UsersActivity extends AppCompatActivity {
 //        });
 //    }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        PresenceManager.getInstance().onScreenResumed();
+        if (presenceSubscriptions != null) {
+            updateVisiblePresence();
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        PresenceManager.getInstance().onScreenPaused();
+        if (presenceSubscriptions != null) {
+            presenceSubscriptions.clear();
+        }
+        if (chatManager != null) {
+            Log.d(TAG, "User cache: " + chatManager.getUserCacheMetrics());
+        }
+    }
+
     private void onUserClicked(User user) {
         Intent intent = new Intent(this, ChatActivity.class);
         intent.putExtra("otherUserId", user.getUserId());
@@ -0,0 +1,144 @@
+package com.robiul.chatapp.adapters;
+
+import com.robiul.chatapp.models.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The rows of a chat in time order: a day header before each day's first
+ * message, and run grouping on every message. Each change only looks at the
+ * rows right around it, so keeping headers and runs costs nothing per message
+ * beyond the insert itself.
+ */
+class ChatRows {
+    // Messages further apart than this start a new run, even from the same sender
+    static final long GROUP_WINDOW_MS = 5 * 60_000;
+
+    private final List<MessageItem> rows = new ArrayList<>();
+
+    int size() {
+        return rows.size();
+    }
+
+    MessageItem get(int index) {
+        return rows.get(index);
+    }
+
+    List<MessageItem> snapshot() {
+        return new ArrayList<>(rows);
+    }
+
+    // Adds a message, or replaces the row already holding it
+    void put(MessageItem item) {
+        ChatMessage message = item.message;
+        int position = insertionPoint(rows, message.getTimestamp(), item.dayKey);
+        int existing = indexOfSame(message, position);
+        if (existing >= 0) {
+            // Server echo of a pending message replaces it; never go back to pending
+            if (message.isPending() && !rows.get(existing).message.isPending()) return;
+            rows.set(existing, item);
+            regroupAround(existing);
+            return;
+        }
+
+        // First message of its day brings the day's header along
+        MessageItem previous = position > 0 ? rows.get(position - 1) : null;
+        if (previous == null || previous.dayKey != item.dayKey) {
+            rows.add(position, MessageItem.dayHeader(item.dayKey, item.dayLabel));
+            position++;
+        }
+        rows.add(position, item);
+        regroupAround(position);
+    }
+
+    void replace(MessageItem item) {
+        int index = indexOf(item.message.getMessageId());
+        if (index >= 0) {
+            rows.set(index, item);
+            regroupAround(index);
+        }
+    }
+
+    void remove(String messageId) {
+        int index = indexOf(messageId);
+        if (index < 0) return;
+        rows.remove(index);
+
+        // Last message of its day takes the header with it
+        boolean dayEmpty = index >= rows.size() || rows.get(index).isDayHeader();
+        if (index > 0 && rows.get(index - 1).isDayHeader() && dayEmpty) {
+            rows.remove(index - 1);
+            index--;
+        }
+        regroup(index - 1);
+        regroup(index);
+    }
+
+    // Changes almost always touch the newest messages, so search from the tail
+    int indexOf(String messageId) {
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            MessageItem row = rows.get(i);
+            if (!row.isDayHeader() && row.message.getMessageId().equals(messageId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Position after every message up to timestamp and every header up to its day
+    static int insertionPoint(List<MessageItem> rows, long timestamp, long dayKey) {
+        int size = rows.size();
+        if (size == 0 || isAtOrBefore(rows.get(size - 1), timestamp, dayKey)) {
+            return size;
+        }
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (isAtOrBefore(rows.get(mid), timestamp, dayKey)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static boolean isAtOrBefore(MessageItem row, long timestamp, long dayKey) {
+        return row.isDayHeader() ? row.dayKey <= dayKey : row.message.getTimestamp() <= timestamp;
+    }
+
+    // The same message may already be listed: pending from the outbox,
+    // or from an older page when it re-enters the live window
+    private int indexOfSame(ChatMessage message, int position) {
+        for (int i = position - 1; i >= 0; i--) {
+            MessageItem row = rows.get(i);
+            if (row.isDayHeader() || row.message.getTimestamp() != message.getTimestamp()) break;
+            if (row.message.getMessageId().equals(message.getMessageId())) return i;
+        }
+        return -1;
+    }
+
+    private void regroupAround(int index) {
+        regroup(index - 1);
+        regroup(index);
+        regroup(index + 1);
+    }
+
+    private void regroup(int index) {
+        if (index < 0 || index >= rows.size()) return;
+        MessageItem row = rows.get(index);
+        if (row.isDayHeader()) return;
+
+        MessageItem previous = index > 0 ? rows.get(index - 1) : null;
+        MessageItem next = index + 1 < rows.size() ? rows.get(index + 1) : null;
+        boolean grouped = previous != null && !previous.isDayHeader() && sameRun(previous.message, row.message);
+        boolean showTime = next == null || next.isDayHeader() || !sameRun(row.message, next.message);
+        rows.set(index, row.withGrouping(grouped, showTime));
+    }
+
+    private static boolean sameRun(ChatMessage earlier, ChatMessage later) {
+        return earlier.getSenderId() != null && earlier.getSenderId().equals(later.getSenderId())
+                && later.getTimestamp() - earlier.getTimestamp() <= GROUP_WINDOW_MS;
+    }
+}
@@ -0,0 +1,219 @@
+package com.robiul.chatapp.adapters;
+
+import android.app.Activity;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.robiul.chatapp.R;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * App-wide view pools for the chat and user lists, plus a warm set of row views
+ * inflated in the background ahead of the first chat. All pooled rows are inflated
+ * against the application context wrapped in the app theme, through a clone of
+ * an Activity's inflater so AppCompat still builds the widgets. They hold no
+ * Activity, so rows left by a closing chat can serve the next one. A row is only
+ * pooled or handed out to a screen with the same configuration it was inflated for.
+ */
+public class ChatViewPool implements ComponentCallbacks2 {
+    private static final String TAG = "ChatViewPool";
+    private static final int MAX_POOLED_BUBBLES = 20;
+    private static final int MAX_POOLED_HEADERS = 6;
+    private static final int MAX_POOLED_USERS = 15;
+    // Roughly one screen of each bubble type
+    private static final int WARM_BUBBLES = 8;
+    private static final int WARM_HEADERS = 2;
+
+    private static final Executor INFLATE_EXECUTOR = Executors.newSingleThreadExecutor();
+    private static ChatViewPool instance;
+
+    private final ScreenPool messagePool = new ScreenPool();
+    private final ScreenPool userPool = new ScreenPool();
+    // Pre-inflated views by layout id, filled off the main thread
+    private final Map<Integer, ArrayDeque<View>> warmViews = new HashMap<>();
+    private final Context appContext;
+    // App-themed context rows are inflated against, for the last configuration asked for; guarded by warmViews
+    private Context rowContext;
+    private final AtomicInteger servedWarm = new AtomicInteger();
+    private final AtomicInteger inflatedOnDemand = new AtomicInteger();
+
+    public static synchronized ChatViewPool getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = new ChatViewPool(appContext);
+            appContext.registerComponentCallbacks(instance);
+        }
+        return instance;
+    }
+
+    private ChatViewPool(Context appContext) {
+        this.appContext = appContext;
+        this.rowContext = new ContextThemeWrapper(appContext, R.style.Theme_ChatApp);
+        messagePool.setMaxRecycledViews(MessageItem.VIEW_TYPE_SENT, MAX_POOLED_BUBBLES);
+        messagePool.setMaxRecycledViews(MessageItem.VIEW_TYPE_RECEIVED, MAX_POOLED_BUBBLES);
+        messagePool.setMaxRecycledViews(MessageItem.VIEW_TYPE_DAY_HEADER, MAX_POOLED_HEADERS);
+        userPool.setMaxRecycledViews(0, MAX_POOLED_USERS);
+    }
+
+    // Shares the pool with every chat screen and hands rows back to it when the screen goes away
+    public void attachMessages(RecyclerView recyclerView, LinearLayoutManager layoutManager) {
+        layoutManager.setRecycleChildrenOnDetach(true);
+        messagePool.attach(recyclerView.getContext());
+        recyclerView.setRecycledViewPool(messagePool);
+    }
+
+    public void attachUsers(RecyclerView recyclerView, LinearLayoutManager layoutManager) {
+        layoutManager.setRecycleChildrenOnDetach(true);
+        userPool.attach(recyclerView.getContext());
+        recyclerView.setRecycledViewPool(userPool);
+    }
+
+    // Inflates the warm set in the background for activity's configuration; safe to call repeatedly
+    public void prewarm(Activity activity) {
+        Context context = rowContext(activity);
+        // A clone keeps AppCompat's factory but not the main thread inflater's state
+        LayoutInflater inflater = LayoutInflater.from(activity).cloneInContext(context);
+        INFLATE_EXECUTOR.execute(() -> {
+            // Only supplies layout params; the views are detached again right away
+            FrameLayout parent = new FrameLayout(context);
+            fill(inflater, parent, R.layout.item_message_sent, WARM_BUBBLES);
+            fill(inflater, parent, R.layout.item_message_received, WARM_BUBBLES);
+            fill(inflater, parent, R.layout.item_day_separator, WARM_HEADERS);
+        });
+    }
+
+    private void fill(LayoutInflater inflater, ViewGroup parent, int layoutId, int count) {
+        int missing;
+        synchronized (warmViews) {
+            missing = count - queue(layoutId).size();
+        }
+        for (int i = 0; i < missing; i++) {
+            View view = inflater.inflate(layoutId, parent, false);
+            synchronized (warmViews) {
+                // The configuration moved on while this was inflating
+                if (parent.getContext() != rowContext) return;
+                queue(layoutId).add(view);
+            }
+        }
+    }
+
+    private ArrayDeque<View> queue(int layoutId) {
+        ArrayDeque<View> queue = warmViews.get(layoutId);
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            warmViews.put(layoutId, queue);
+        }
+        return queue;
+    }
+
+    // A warm view when one is ready, otherwise inflated now; either way for parent's configuration
+    public View takeOrInflate(int layoutId, ViewGroup parent) {
+        Context context = rowContext(parent.getContext());
+        View view;
+        synchronized (warmViews) {
+            view = queue(layoutId).poll();
+        }
+        if (view != null) {
+            servedWarm.incrementAndGet();
+            return view;
+        }
+        inflatedOnDemand.incrementAndGet();
+        return LayoutInflater.from(parent.getContext()).cloneInContext(context).inflate(layoutId, parent, false);
+    }
+
+    // The app-themed row context for screen's configuration; warm views for any other are dropped
+    private Context rowContext(Context screen) {
+        synchronized (warmViews) {
+            if (!usableIn(rowContext, screen)) {
+                Context configured = appContext.createConfigurationContext(screen.getResources().getConfiguration());
+                rowContext = new ContextThemeWrapper(configured, R.style.Theme_ChatApp);
+                warmViews.clear();
+            }
+            return rowContext;
+        }
+    }
+
+    // Rows inflated for another configuration would show stale resources
+    static boolean usableIn(Context source, Context target) {
+        return source.getResources().getConfiguration().diff(target.getResources().getConfiguration()) == 0;
+    }
+
+    public String getStats() {
+        return "warm=" + servedWarm.get() + " inflated=" + inflatedOnDemand.get();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_BACKGROUND) {
+            Log.d(TAG, "Trimming view pools");
+            synchronized (warmViews) {
+                warmViews.clear();
+            }
+            messagePool.clear();
+            userPool.clear();
+        }
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        // Views inflated for the old configuration would show stale resources
+        synchronized (warmViews) {
+            warmViews.clear();
+        }
+        messagePool.clear();
+        userPool.clear();
+        MessageRenderer.clearTextParams();
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    // Shared between screens, but only takes back rows that suit the screen using it now
+    private static class ScreenPool extends RecyclerView.RecycledViewPool {
+        private WeakReference<Context> screen = new WeakReference<>(null);
+
+        void attach(Context context) {
+            screen = new WeakReference<>(context);
+        }
+
+        @Override
+        public void putRecycledView(RecyclerView.ViewHolder scrap) {
+            if (fits(scrap)) super.putRecycledView(scrap);
+        }
+
+        // Rows pooled while another screen was attached are checked again on the way out
+        @Override
+        public RecyclerView.ViewHolder getRecycledView(int viewType) {
+            RecyclerView.ViewHolder holder = super.getRecycledView(viewType);
+            while (holder != null && !fits(holder)) {
+                holder = super.getRecycledView(viewType);
+            }
+            return holder;
+        }
+
+        private boolean fits(RecyclerView.ViewHolder holder) {
+            Context context = screen.get();
+            return context != null && usableIn(holder.itemView.getContext(), context);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.robiul.chatapp.adapters;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.robiul.chatapp.R;
+import com.robiul.chatapp.models.ChatRoom;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Recent conversations, newest first, then by chatId descending like the inbox query
+public class ConversationsAdapter extends RecyclerView.Adapter<ConversationsAdapter.ConversationViewHolder> {
+    private final List<ChatRoom> conversations = new ArrayList<>();
+    private final String currentUserId;
+    private final OnConversationClickListener onConversationClickListener;
+    private final SimpleDateFormat timeFormat;
+
+    public ConversationsAdapter(String currentUserId, OnConversationClickListener onConversationClickListener) {
+        this.currentUserId = currentUserId;
+        this.onConversationClickListener = onConversationClickListener;
+        this.timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
+    }
+
+    @NonNull
+    @Override
+    public ConversationViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_conversation, parent, false);
+        return new ConversationViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ConversationViewHolder holder, int position) {
+        ChatRoom room = conversations.get(position);
+        String otherUserId = room.getOtherParticipant(currentUserId);
+        String otherUserName = getDisplayName(room, otherUserId);
+
+        holder.name.setText(otherUserName);
+        String prefix = currentUserId.equals(room.getLastMessageSender()) ? "You: " : "";
+        holder.lastMessage.setText(prefix + (room.getLastMessage() != null ? room.getLastMessage() : ""));
+        holder.time.setText(timeFormat.format(new java.util.Date(room.getLastMessageTime())));
+
+        holder.itemView.setOnClickListener(v -> {
+            if (onConversationClickListener != null) {
+                onConversationClickListener.onConversationClick(otherUserId, otherUserName);
+            }
+        });
+    }
+
+    private String getDisplayName(ChatRoom room, String userId) {
+        Map<String, String> names = room.getParticipantNames();
+        String name = names != null ? names.get(userId) : null;
+        return name != null ? name : "User";
+    }
+
+    @Override
+    public int getItemCount() {
+        return conversations.size();
+    }
+
+    // Upserts changed rooms at their new position and drops removed ones
+    public void applyChanges(List<ChatRoom> changed, List<ChatRoom> removed) {
+        for (ChatRoom room : removed) {
+            int index = indexOf(room.getChatId());
+            if (index >= 0) {
+                conversations.remove(index);
+                notifyItemRemoved(index);
+            }
+        }
+
+        for (ChatRoom room : changed) {
+            int previous = indexOf(room.getChatId());
+            if (previous >= 0) {
+                conversations.remove(previous);
+            }
+            int position = insertionPoint(room);
+            conversations.add(position, room);
+
+            if (previous < 0) {
+                notifyItemInserted(position);
+            } else {
+                if (previous != position) notifyItemMoved(previous, position);
+                notifyItemChanged(position);
+            }
+        }
+    }
+
+    public void appendPage(List<ChatRoom> page) {
+        applyChanges(page, new ArrayList<>());
+    }
+
+    // The last room listed, where the next page continues from
+    public ChatRoom getOldest() {
+        return conversations.isEmpty() ? null : conversations.get(conversations.size() - 1);
+    }
+
+    private int indexOf(String chatId) {
+        for (int i = 0; i < conversations.size(); i++) {
+            if (conversations.get(i).getChatId().equals(chatId)) return i;
+        }
+        return -1;
+    }
+
+    // First position whose room sorts after the given one
+    private int insertionPoint(ChatRoom room) {
+        int low = 0, high = conversations.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            ChatRoom other = conversations.get(mid);
+            if (other.getLastMessageTime() > room.getLastMessageTime()
+                    || (other.getLastMessageTime() == room.getLastMessageTime()
+                    && other.getChatId().compareTo(room.getChatId()) > 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    static class ConversationViewHolder extends RecyclerView.ViewHolder {
+        TextView name, lastMessage, time;
+
+        public ConversationViewHolder(@NonNull View itemView) {
+            super(itemView);
+            name = itemView.findViewById(R.id.conversationName);
+            lastMessage = itemView.findViewById(R.id.conversationLastMessage);
+            time = itemView.findViewById(R.id.conversationTime);
+        }
+    }
+
+    public interface OnConversationClickListener {
+        void onConversationClick(String otherUserId, String otherUserName);
+    }
+}
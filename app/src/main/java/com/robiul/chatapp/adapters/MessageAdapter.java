@@ -1,81 +1,268 @@
 package com.robiul.chatapp.adapters;
 
-import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 
 import com.robiul.chatapp.R;
 import com.robiul.chatapp.models.ChatMessage;
+import com.robiul.chatapp.models.MessageDelta;
 
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 
+/**
+ * Incoming messages are rendered into MessageItems off the main thread, merged
+ * into the chat's rows (with day headers and sender runs), and the result is
+ * diffed against what is on screen on a background thread. Binding only
+ * assigns precomputed values.
+ */
 public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageViewHolder> {
-    private List<ChatMessage> messages;
+    // Rebinds only the seen status of a row
+    private static final Object PAYLOAD_SEEN = new Object();
+
+    private static final DiffUtil.ItemCallback<MessageItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<MessageItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull MessageItem oldItem, @NonNull MessageItem newItem) {
+            return oldItem.isSameRow(newItem);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull MessageItem oldItem, @NonNull MessageItem newItem) {
+            return oldItem.hasSameContent(newItem);
+        }
+    };
+
+    // Latest state, ahead of the differ while a diff is running
+    private final ChatRows rows = new ChatRows();
+    private final AsyncListDiffer<MessageItem> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+    private final Map<String, Long> stableIds = new HashMap<>();
+    private final MessageRenderer renderer;
+    private final ChatViewPool viewPool;
     private String currentUserId;
-    private SimpleDateFormat timeFormat;
+    // Our messages up to this timestamp have been read by the other user
+    private long seenWatermark = 0;
 
-    public MessageAdapter(String currentUserId) {
-        this.messages = new ArrayList<>();
+    public MessageAdapter(String currentUserId, ChatViewPool viewPool) {
         this.currentUserId = currentUserId;
-        this.timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
+        this.viewPool = viewPool;
+        this.renderer = new MessageRenderer(currentUserId);
+        setHasStableIds(true);
+    }
+
+    private List<MessageItem> shown() {
+        return differ.getCurrentList();
+    }
+
+    // Message ids are strings; hand out a unique long per id the first time it is seen.
+    // Day headers take negative ids so the two never collide.
+    @Override
+    public long getItemId(int position) {
+        MessageItem row = shown().get(position);
+        if (row.isDayHeader()) {
+            return -(row.dayKey + 1);
+        }
+        String messageId = row.message.getMessageId();
+        Long id = stableIds.get(messageId);
+        if (id == null) {
+            id = (long) stableIds.size();
+            stableIds.put(messageId, id);
+        }
+        return id;
     }
 
     @NonNull
     @Override
     public MessageViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        LayoutInflater inflater = LayoutInflater.from(parent.getContext());
         View view;
 
-        if (viewType == 0) { // Sent message
-            view = inflater.inflate(R.layout.item_message_sent, parent, false);
-        } else { // Received message
-            view = inflater.inflate(R.layout.item_message_received, parent, false);
+        if (viewType == MessageItem.VIEW_TYPE_DAY_HEADER) {
+            return new MessageViewHolder(viewPool.takeOrInflate(R.layout.item_day_separator, parent));
+        } else if (viewType == MessageItem.VIEW_TYPE_SENT) {
+            view = viewPool.takeOrInflate(R.layout.item_message_sent, parent);
+        } else {
+            view = viewPool.takeOrInflate(R.layout.item_message_received, parent);
         }
-        return new MessageViewHolder(view);
+        MessageViewHolder holder = new MessageViewHolder(view);
+        captureTextParams(holder, viewType);
+        return holder;
+    }
+
+    // Later messages of this type get their text laid out ahead of time
+    private void captureTextParams(MessageViewHolder holder, int viewType) {
+        if (!renderer.hasTextParams(viewType)) {
+            renderer.setTextParams(viewType, TextViewCompat.getTextMetricsParams(holder.messageText));
+        }
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull MessageViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.isEmpty() && payloads.contains(PAYLOAD_SEEN)) {
+            bindSeenStatus(holder, shown().get(position).message);
+            return;
+        }
+        super.onBindViewHolder(holder, position, payloads);
     }
 
     @Override
     public void onBindViewHolder(@NonNull MessageViewHolder holder, int position) {
-        ChatMessage message = messages.get(position);
+        MessageItem item = shown().get(position);
+        if (item.isDayHeader()) {
+            holder.dayText.setText(item.dayLabel);
+            return;
+        }
+        // Holders from the shared pool skip onCreateViewHolder
+        captureTextParams(holder, item.viewType);
+
+        if (item.text instanceof PrecomputedTextCompat) {
+            try {
+                TextViewCompat.setPrecomputedText(holder.messageText, (PrecomputedTextCompat) item.text);
+            } catch (IllegalArgumentException e) {
+                // Text metrics changed since rendering, e.g. font scale
+                holder.messageText.setText(item.text.toString());
+            }
+        } else {
+            holder.messageText.setText(item.text);
+        }
+        holder.timeText.setText(item.timeLabel);
+        holder.timeText.setVisibility(item.showTime ? View.VISIBLE : View.GONE);
+        // Runs sit tight together; the gap above marks a new sender or a pause
+        holder.itemView.setPadding(holder.itemView.getPaddingLeft(),
+                item.groupedWithPrevious ? holder.groupedPaddingTop : holder.defaultPaddingTop,
+                holder.itemView.getPaddingRight(), holder.itemView.getPaddingBottom());
+
+        bindSeenStatus(holder, item.message);
+    }
+
+    private void bindSeenStatus(MessageViewHolder holder, ChatMessage message) {
+        if (holder.seenStatus != null) {
+            if (message.isPending()) {
+                holder.seenStatus.setText("Sending...");
+                holder.seenStatus.setVisibility(View.VISIBLE);
+            } else if (isSeen(message)) {
+                holder.seenStatus.setText("Seen");
+                holder.seenStatus.setVisibility(View.VISIBLE);
+            } else {
+                holder.seenStatus.setVisibility(View.GONE);
+            }
+        }
+    }
+
+    // Seen state is derived from the chat's watermark rather than a per-message flag
+    private boolean isSeen(ChatMessage message) {
+        return message.getSenderId().equals(currentUserId) && message.getTimestamp() <= seenWatermark;
+    }
 
-        // Set message text
-        holder.messageText.setText(message.getMessage());
+    // Not part of the diffed content; rows on screen between the old and new watermark are rebound directly
+    public void setSeenWatermark(long watermark) {
+        if (watermark <= seenWatermark) return;
 
-        // Format and set time
-        String time = timeFormat.format(new java.util.Date(message.getTimestamp()));
-        holder.timeText.setText(time);
+        List<MessageItem> shown = shown();
+        int from = ChatRows.insertionPoint(shown, seenWatermark, renderer.dayKey(seenWatermark));
+        int to = ChatRows.insertionPoint(shown, watermark, renderer.dayKey(watermark));
+        seenWatermark = watermark;
+        for (int i = from; i < to; i++) {
+            if (shown.get(i).viewType == MessageItem.VIEW_TYPE_SENT) {
+                notifyItemChanged(i, PAYLOAD_SEEN);
+            }
+        }
+    }
+
+    public long getNewestReceivedTimestamp() {
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            MessageItem item = rows.get(i);
+            if (item.viewType == MessageItem.VIEW_TYPE_RECEIVED) {
+                return item.message.getTimestamp();
+            }
+        }
+        return 0;
     }
 
     @Override
     public int getItemCount() {
-        return messages.size();
+        return shown().size();
     }
 
     @Override
     public int getItemViewType(int position) {
-        ChatMessage message = messages.get(position);
-        return message.getSenderId().equals(currentUserId) ? 0 : 1;
+        return shown().get(position).viewType;
+    }
+
+    public boolean isMessageRow(int position) {
+        return !shown().get(position).isDayHeader();
     }
 
-    public void setMessages(List<ChatMessage> messages) {
-        this.messages = messages;
-        notifyDataSetChanged();
+    public void applyDelta(MessageDelta delta) {
+        applyDelta(delta, null);
+    }
+
+    // Renders the delta in the background, then merges it; onShown runs once the rows are on screen
+    public void applyDelta(MessageDelta delta, Runnable onShown) {
+        renderer.execute(
+                () -> new RenderedDelta(renderer.renderAll(delta.getAdded()), renderer.renderAll(delta.getModified())),
+                rendered -> merge(delta.getRemoved(), rendered, onShown));
+    }
+
+    private void merge(List<ChatMessage> removedMessages, RenderedDelta rendered, Runnable onShown) {
+        for (ChatMessage removed : removedMessages) {
+            rows.remove(removed.getMessageId());
+        }
+        for (MessageItem modified : rendered.modified) {
+            rows.replace(modified);
+        }
+        for (MessageItem added : rendered.added) {
+            rows.put(added);
+        }
+        submit(onShown);
+    }
+
+    public void prependMessages(List<ChatMessage> older) {
+        if (older.isEmpty()) return;
+        renderer.execute(() -> renderer.renderAll(older), rendered -> {
+            for (MessageItem item : rendered) {
+                rows.put(item);
+            }
+            submit(null);
+        });
+    }
+
+    // The differ keeps the list it is given, so hand it a snapshot of the rows.
+    // Going to or from empty skips the background diff and applies right away.
+    private void submit(Runnable onShown) {
+        differ.submitList(rows.size() == 0 ? null : rows.snapshot(), onShown);
+    }
+
+    private static class RenderedDelta {
+        final List<MessageItem> added;
+        final List<MessageItem> modified;
+
+        RenderedDelta(List<MessageItem> added, List<MessageItem> modified) {
+            this.added = added;
+            this.modified = modified;
+        }
     }
 
     static class MessageViewHolder extends RecyclerView.ViewHolder {
-        TextView messageText, timeText;
+        TextView messageText, timeText, seenStatus, dayText;
+        final int defaultPaddingTop;
+        final int groupedPaddingTop;
 
         public MessageViewHolder(@NonNull View itemView) {
             super(itemView);
             messageText = itemView.findViewById(R.id.messageText);
             timeText = itemView.findViewById(R.id.timeText);
+            seenStatus = itemView.findViewById(R.id.seenStatus); // sent layout only
+            dayText = itemView.findViewById(R.id.dayText); // day separator only
+            defaultPaddingTop = itemView.getPaddingTop();
+            groupedPaddingTop = defaultPaddingTop / 4;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,72 @@
+package com.robiul.chatapp.adapters;
+
+import com.robiul.chatapp.models.ChatMessage;
+
+import java.util.Objects;
+
+/**
+ * One row of a chat: a message with everything its bubble shows already
+ * computed, or a day header. Grouping flags depend on the neighbouring rows
+ * and are part of the content, so a row is rebound when its run changes.
+ */
+public class MessageItem {
+    public static final int VIEW_TYPE_SENT = 0;
+    public static final int VIEW_TYPE_RECEIVED = 1;
+    public static final int VIEW_TYPE_DAY_HEADER = 2;
+
+    final ChatMessage message; // null for a day header
+    final int viewType;
+    final long dayKey;
+    final String dayLabel;
+    final String timeLabel;
+    // PrecomputedTextCompat once the bubble's text metrics are known, plain text before that
+    final CharSequence text;
+    // Continues a run of messages from the same sender
+    final boolean groupedWithPrevious;
+    // Last of its run, so it carries the run's time
+    final boolean showTime;
+
+    MessageItem(ChatMessage message, int viewType, long dayKey, String dayLabel, String timeLabel,
+                CharSequence text, boolean groupedWithPrevious, boolean showTime) {
+        this.message = message;
+        this.viewType = viewType;
+        this.dayKey = dayKey;
+        this.dayLabel = dayLabel;
+        this.timeLabel = timeLabel;
+        this.text = text;
+        this.groupedWithPrevious = groupedWithPrevious;
+        this.showTime = showTime;
+    }
+
+    static MessageItem dayHeader(long dayKey, String dayLabel) {
+        return new MessageItem(null, VIEW_TYPE_DAY_HEADER, dayKey, dayLabel, null, dayLabel,
+                false, false);
+    }
+
+    boolean isDayHeader() {
+        return message == null;
+    }
+
+    MessageItem withGrouping(boolean groupedWithPrevious, boolean showTime) {
+        if (groupedWithPrevious == this.groupedWithPrevious && showTime == this.showTime) return this;
+        return new MessageItem(message, viewType, dayKey, dayLabel, timeLabel, text, groupedWithPrevious, showTime);
+    }
+
+    boolean isSameRow(MessageItem other) {
+        if (isDayHeader() || other.isDayHeader()) {
+            return isDayHeader() && other.isDayHeader() && dayKey == other.dayKey;
+        }
+        return message.getMessageId().equals(other.message.getMessageId());
+    }
+
+    boolean hasSameContent(MessageItem other) {
+        return Objects.equals(message, other.message)
+                && Objects.equals(dayLabel, other.dayLabel)
+                && groupedWithPrevious == other.groupedWithPrevious
+                && showTime == other.showTime;
+    }
+
+    public ChatMessage getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,89 @@
+package com.robiul.chatapp.adapters;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.core.text.PrecomputedTextCompat;
+
+import com.robiul.chatapp.models.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Builds MessageItems on a background thread: time labels from a per-minute
+ * cache and text laid out ahead of time with PrecomputedTextCompat. Work runs
+ * on one thread and results come back to the main thread in submission order.
+ */
+public class MessageRenderer {
+    private static final Executor RENDER_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final String currentUserId;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final TimeLabels timeLabels = new TimeLabels(Locale.getDefault(), TimeZone.getDefault());
+    // Text metrics of each bubble layout, taken from its first inflated view. Shared by
+    // every chat, since pooled views mean a new chat may never inflate one itself.
+    private static volatile PrecomputedTextCompat.Params sentParams;
+    private static volatile PrecomputedTextCompat.Params receivedParams;
+
+    public MessageRenderer(String currentUserId) {
+        this.currentUserId = currentUserId;
+    }
+
+    public boolean hasTextParams(int viewType) {
+        return (viewType == MessageItem.VIEW_TYPE_SENT ? sentParams : receivedParams) != null;
+    }
+
+    public void setTextParams(int viewType, PrecomputedTextCompat.Params params) {
+        if (viewType == MessageItem.VIEW_TYPE_SENT) {
+            sentParams = params;
+        } else {
+            receivedParams = params;
+        }
+    }
+
+    // Font scale or locale changed; the next inflated or bound view supplies fresh metrics
+    static void clearTextParams() {
+        sentParams = null;
+        receivedParams = null;
+    }
+
+    public <T> void execute(Supplier<T> work, Consumer<T> onMain) {
+        RENDER_EXECUTOR.execute(() -> {
+            T result = work.get();
+            mainHandler.post(() -> onMain.accept(result));
+        });
+    }
+
+    // Render thread only
+    public List<MessageItem> renderAll(List<ChatMessage> messages) {
+        List<MessageItem> items = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            items.add(render(message));
+        }
+        return items;
+    }
+
+    private MessageItem render(ChatMessage message) {
+        int viewType = currentUserId.equals(message.getSenderId())
+                ? MessageItem.VIEW_TYPE_SENT : MessageItem.VIEW_TYPE_RECEIVED;
+        String body = message.getMessage() != null ? message.getMessage() : "";
+        PrecomputedTextCompat.Params params = viewType == MessageItem.VIEW_TYPE_SENT ? sentParams : receivedParams;
+        CharSequence text = params != null ? PrecomputedTextCompat.create(body, params) : body;
+        long timestamp = message.getTimestamp();
+        // Grouping is filled in when the item is placed next to its neighbours
+        return new MessageItem(message, viewType, timeLabels.dayKey(timestamp), timeLabels.dayLabel(timestamp),
+                timeLabels.label(timestamp), text, false, true);
+    }
+
+    // Cheap enough for the main thread: no formatting, just the zone offset
+    public long dayKey(long timestamp) {
+        return timeLabels.dayKey(timestamp);
+    }
+}
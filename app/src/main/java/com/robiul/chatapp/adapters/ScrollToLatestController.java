@@ -0,0 +1,126 @@
+package com.robiul.chatapp.adapters;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Keeps a chat list on its newest row. Rows inserted at the tail are followed
+ * only while the user is at (or already heading to) the bottom; otherwise they
+ * are counted as unseen. Far jumps skip the animation so a long thread is not
+ * scrolled through row by row. Main thread only.
+ */
+public class ScrollToLatestController {
+    // Within this many rows of the end still counts as reading the latest
+    private static final int BOTTOM_SLOP = 1;
+    // Further away than this, jump instead of animating
+    private static final int SMOOTH_SCROLL_MAX_ROWS = 15;
+
+    private final RecyclerView recyclerView;
+    private final LinearLayoutManager layoutManager;
+    private final RecyclerView.Adapter<?> adapter;
+    private final IntPredicate countsAsMessage;
+    private final UnseenListener listener;
+    // Our own smooth scroll is under way; rows arriving meanwhile are followed too
+    private boolean following = false;
+    private boolean followNextInsert = false;
+    private int unseenCount = 0;
+
+    public ScrollToLatestController(RecyclerView recyclerView, LinearLayoutManager layoutManager,
+                                    IntPredicate countsAsMessage, UnseenListener listener) {
+        this.recyclerView = recyclerView;
+        this.layoutManager = layoutManager;
+        this.adapter = recyclerView.getAdapter();
+        this.countsAsMessage = countsAsMessage;
+        this.listener = listener;
+
+        adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                onRowsInserted(positionStart, itemCount);
+            }
+        });
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(@NonNull RecyclerView view, int newState) {
+                if (newState != RecyclerView.SCROLL_STATE_SETTLING) {
+                    // Finished, or the user took over
+                    following = false;
+                }
+            }
+
+            @Override
+            public void onScrolled(@NonNull RecyclerView view, int dx, int dy) {
+                if (unseenCount > 0 && rowsBelowViewport(adapter.getItemCount()) <= BOTTOM_SLOP) {
+                    setUnseenCount(0);
+                }
+            }
+        });
+    }
+
+    // The next tail insertion is followed wherever the list is, e.g. the user's own message
+    public void followNextInsert() {
+        followNextInsert = true;
+    }
+
+    public void scrollToLatest() {
+        int count = adapter.getItemCount();
+        setUnseenCount(0);
+        if (count == 0) return;
+
+        int last = count - 1;
+        boolean laidOut = layoutManager.findLastVisibleItemPosition() != RecyclerView.NO_POSITION;
+        if (!laidOut || rowsBelowViewport(count) > SMOOTH_SCROLL_MAX_ROWS) {
+            following = false;
+            layoutManager.scrollToPosition(last);
+        } else {
+            following = true;
+            recyclerView.smoothScrollToPosition(last);
+        }
+    }
+
+    public int getUnseenCount() {
+        return unseenCount;
+    }
+
+    private void onRowsInserted(int positionStart, int itemCount) {
+        int count = adapter.getItemCount();
+        // Older pages land at the top and never move the view
+        if (positionStart + itemCount != count) return;
+
+        // The viewport still reflects the list before this insertion
+        boolean wasAtBottom = rowsBelowViewport(count - itemCount) <= BOTTOM_SLOP;
+        if (followNextInsert || following || wasAtBottom) {
+            followNextInsert = false;
+            scrollToLatest();
+            return;
+        }
+
+        int messages = 0;
+        for (int i = positionStart; i < count; i++) {
+            if (countsAsMessage.test(i)) messages++;
+        }
+        if (messages > 0) {
+            setUnseenCount(unseenCount + messages);
+        }
+    }
+
+    // Rows after the last visible one; a list not laid out yet opens at the bottom anyway
+    private int rowsBelowViewport(int count) {
+        int lastVisible = layoutManager.findLastVisibleItemPosition();
+        if (lastVisible == RecyclerView.NO_POSITION) return 0;
+        return Math.max(0, count - 1 - lastVisible);
+    }
+
+    private void setUnseenCount(int count) {
+        if (count == unseenCount) return;
+        unseenCount = count;
+        listener.onUnseenCountChanged(count);
+    }
+
+    public interface UnseenListener {
+        void onUnseenCountChanged(int count);
+    }
+}
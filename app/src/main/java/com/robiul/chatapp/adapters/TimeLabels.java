@@ -0,0 +1,81 @@
+package com.robiul.chatapp.adapters;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * HH:mm labels cached per minute and day labels cached per local day, so each
+ * label is formatted once per distinct minute or day rather than per bind.
+ */
+public class TimeLabels {
+    private static final long MINUTE_MS = 60_000;
+    private static final long DAY_MS = 24 * 60 * MINUTE_MS;
+    private static final int MAX_ENTRIES = 1024;
+
+    private final TimeZone timeZone;
+    private final SimpleDateFormat timeFormat;
+    private final SimpleDateFormat dayFormat;
+    private final Map<Long, String> timeLabels = new LinkedHashMap<Long, String>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private final Map<Long, String> dayLabels = new HashMap<>();
+    // Day the relative labels ("Today", "Yesterday") were computed against
+    private long labelsToday = Long.MIN_VALUE;
+
+    public TimeLabels(Locale locale, TimeZone timeZone) {
+        this.timeZone = timeZone;
+        timeFormat = new SimpleDateFormat("HH:mm", locale);
+        timeFormat.setTimeZone(timeZone);
+        dayFormat = new SimpleDateFormat("EEE, d MMM yyyy", locale);
+        dayFormat.setTimeZone(timeZone);
+    }
+
+    public synchronized String label(long timestamp) {
+        long minute = Math.floorDiv(timestamp, MINUTE_MS);
+        String label = timeLabels.get(minute);
+        if (label == null) {
+            label = timeFormat.format(new Date(minute * MINUTE_MS));
+            timeLabels.put(minute, label);
+        }
+        return label;
+    }
+
+    // Local calendar day of the timestamp, as days since the epoch
+    public long dayKey(long timestamp) {
+        return Math.floorDiv(timestamp + timeZone.getOffset(timestamp), DAY_MS);
+    }
+
+    public String dayLabel(long timestamp) {
+        return dayLabel(timestamp, System.currentTimeMillis());
+    }
+
+    public synchronized String dayLabel(long timestamp, long now) {
+        long today = dayKey(now);
+        if (today != labelsToday) {
+            dayLabels.clear();
+            labelsToday = today;
+        }
+
+        long day = dayKey(timestamp);
+        String label = dayLabels.get(day);
+        if (label == null) {
+            if (day == today) {
+                label = "Today";
+            } else if (day == today - 1) {
+                label = "Yesterday";
+            } else {
+                label = dayFormat.format(new Date(timestamp));
+            }
+            dayLabels.put(day, label);
+        }
+        return label;
+    }
+}
@@ -3,22 +3,45 @@ package com.robiul.chatapp.adapters;
 
 import android.content.res.ColorStateList;
 import android.graphics.Color;
-import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 
 import com.robiul.chatapp.R;
 import com.robiul.chatapp.models.User;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class UsersAdapter extends RecyclerView.Adapter<UsersAdapter.UserViewHolder> {
-    private List<User> users;
+    // Rebinds only the status views of a row
+    private static final Object PAYLOAD_PRESENCE = new Object();
+
+    private static final DiffUtil.ItemCallback<User> DIFF_CALLBACK = new DiffUtil.ItemCallback<User>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull User oldItem, @NonNull User newItem) {
+            return oldItem.getUserId().equals(newItem.getUserId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull User oldItem, @NonNull User newItem) {
+            return oldItem.equals(newItem);
+        }
+    };
+
+    // Latest state; the differ shows it once the background diff is done
+    private final List<User> users;
+    private final AsyncListDiffer<User> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+    private final Map<String, Long> stableIds = new HashMap<>();
+    private final Map<String, Boolean> presence = new HashMap<>();
     private OnUserClickListener onUserClickListener;
     private int[] avatarColors = {
             Color.parseColor("#FF5733"), Color.parseColor("#33FF57"),
@@ -28,37 +51,117 @@ public class UsersAdapter extends RecyclerView.Adapter<UsersAdapter.UserViewHold
     };
 
     public UsersAdapter(List<User> users, OnUserClickListener onUserClickListener) {
-        this.users = users;
+        this.users = new ArrayList<>(users);
         this.onUserClickListener = onUserClickListener;
+        setHasStableIds(true);
+        submit();
+    }
+
+    private List<User> shown() {
+        return differ.getCurrentList();
+    }
+
+    // Going to or from empty skips the background diff and applies right away
+    private void submit() {
+        differ.submitList(users.isEmpty() ? null : new ArrayList<>(users));
+    }
+
+    @Override
+    public long getItemId(int position) {
+        String userId = shown().get(position).getUserId();
+        Long id = stableIds.get(userId);
+        if (id == null) {
+            id = (long) stableIds.size();
+            stableIds.put(userId, id);
+        }
+        return id;
     }
 
     @NonNull
     @Override
     public UserViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        View view = LayoutInflater.from(parent.getContext())
-                .inflate(R.layout.item_user, parent, false);
+        // Rows are shared through the app-wide pool, so they must not hold this Activity
+        View view = ChatViewPool.getInstance(parent.getContext()).takeOrInflate(R.layout.item_user, parent);
         return new UserViewHolder(view);
     }
 
     @Override
     public void onBindViewHolder(@NonNull UserViewHolder holder, int position) {
-        User user = users.get(position);
+        User user = shown().get(position);
         holder.bind(user, onUserClickListener, avatarColors);
+        holder.bindPresence(isOnline(user));
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull UserViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.isEmpty() && payloads.contains(PAYLOAD_PRESENCE)) {
+            holder.bindPresence(isOnline(shown().get(position)));
+            return;
+        }
+        super.onBindViewHolder(holder, position, payloads);
+    }
+
+    private boolean isOnline(User user) {
+        return Boolean.TRUE.equals(presence.get(user.getUserId()));
+    }
+
+    public User getUser(int position) {
+        return shown().get(position);
+    }
+
+    // Presence delta for one user; only that row's status is rebound
+    public void setPresence(String userId, boolean online, long lastSeen) {
+        Boolean previous = presence.put(userId, online);
+        if (previous != null && previous == online) return;
+
+        List<User> shown = shown();
+        for (int i = 0; i < shown.size(); i++) {
+            if (shown.get(i).getUserId().equals(userId)) {
+                notifyItemChanged(i, PAYLOAD_PRESENCE);
+                break;
+            }
+        }
     }
 
     @Override
     public int getItemCount() {
-        return users.size();
+        return shown().size();
     }
 
     public void setUsers(List<User> users) {
-        this.users = users;
-        notifyDataSetChanged();
+        this.users.clear();
+        this.users.addAll(users);
+        submit();
+    }
+
+    // Next page from the directory; only the new rows are bound
+    public void appendUsers(List<User> page) {
+        if (page.isEmpty()) return;
+        users.addAll(page);
+        submit();
+    }
+
+    // Refreshed profiles replace their rows; the diff rebinds only those that differ
+    public void updateUsers(List<User> changed) {
+        for (User user : changed) {
+            for (int i = 0; i < users.size(); i++) {
+                if (users.get(i).getUserId().equals(user.getUserId())) {
+                    users.set(i, user);
+                    break;
+                }
+            }
+        }
+        submit();
+    }
+
+    public void clear() {
+        users.clear();
+        submit();
     }
 
     public void addUser(User user) {
         users.add(user);
-        notifyItemInserted(users.size() - 1);
+        submit();
     }
 
     static class UserViewHolder extends RecyclerView.ViewHolder {
@@ -77,23 +180,7 @@ public class UsersAdapter extends RecyclerView.Adapter<UsersAdapter.UserViewHold
             onlineIndicator = itemView.findViewById(R.id.onlineIndicator);
         }
 
-        public void bind(User user, OnUserClickListener listener, int[] avatarColors) {
-            userName.setText(user.getName());
-            userEmail.setText(user.getEmail());
-
-            // Set user initial for avatar
-            if (user.getName() != null && !user.getName().isEmpty()) {
-                String initial = user.getName().substring(0, 1).toUpperCase();
-                userInitial.setText(initial);
-
-                // Set random color for avatar based on user name
-                int colorIndex = Math.abs(user.getName().hashCode()) % avatarColors.length;
-                userInitial.setBackgroundColor(avatarColors[colorIndex]);
-            }
-
-            // Check if user is online
-            boolean isOnline = user.getFcmToken() != null && !user.getFcmToken().isEmpty();
-
+        public void bindPresence(boolean isOnline) {
             if (isOnline) {
                 userStatus.setText("Online");
                 userStatus.setTextColor(itemView.getContext().getColor(android.R.color.holo_green_dark));
@@ -109,7 +196,21 @@ public class UsersAdapter extends RecyclerView.Adapter<UsersAdapter.UserViewHold
                 );
                 onlineIndicator.setVisibility(View.VISIBLE); // keep it visible as red
             }
+        }
+
+        public void bind(User user, OnUserClickListener listener, int[] avatarColors) {
+            userName.setText(user.getName());
+            userEmail.setText(user.getEmail());
+
+            // Set user initial for avatar
+            if (user.getName() != null && !user.getName().isEmpty()) {
+                String initial = user.getName().substring(0, 1).toUpperCase();
+                userInitial.setText(initial);
 
+                // Set random color for avatar based on user name
+                int colorIndex = Math.abs(user.getName().hashCode()) % avatarColors.length;
+                userInitial.setBackgroundColor(avatarColors[colorIndex]);
+            }
 
             itemView.setOnClickListener(v -> {
                 if (listener != null) {
@@ -0,0 +1,37 @@
+package com.robiul.chatapp.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Counters for a cache; safe to update from any thread
+public class CacheMetrics {
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshedEntries = new AtomicLong();
+    private final AtomicLong refreshBytes = new AtomicLong();
+
+    public void recordHit() { hits.incrementAndGet(); }
+    public void recordMiss() { misses.incrementAndGet(); }
+
+    public void recordRefresh(int entries, long bytes) {
+        refreshedEntries.addAndGet(entries);
+        refreshBytes.addAndGet(bytes);
+    }
+
+    // Getters
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getRefreshedEntries() { return refreshedEntries.get(); }
+    public long getRefreshBytes() { return refreshBytes.get(); }
+
+    public double getHitRate() {
+        long total = getHits() + getMisses();
+        return total == 0 ? 0 : (double) getHits() / total;
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + getHits() + " misses=" + getMisses()
+                + " hitRate=" + String.format("%.2f", getHitRate())
+                + " refreshed=" + getRefreshedEntries() + " refreshBytes=" + getRefreshBytes();
+    }
+}
@@ -0,0 +1,90 @@
+package com.robiul.chatapp.data;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+public class ChatDatabase extends SQLiteOpenHelper {
+    private static final String DATABASE_NAME = "chat.db";
+    private static final int DATABASE_VERSION = 5;
+
+    public static final String TABLE_MESSAGES = "messages";
+    public static final String TABLE_CHAT_SYNC = "chat_sync";
+    public static final String TABLE_OUTBOX = "outbox";
+    public static final String TABLE_USERS = "users";
+
+    private static final String MESSAGE_COLUMNS = "messageId TEXT PRIMARY KEY, "
+            + "chatId TEXT NOT NULL, "
+            + "senderId TEXT, "
+            + "receiverId TEXT, "
+            + "message TEXT, "
+            + "timestamp INTEGER NOT NULL, "
+            + "messageType TEXT, "
+            + "isSeen INTEGER NOT NULL DEFAULT 0";
+
+    private static ChatDatabase instance;
+
+    public static synchronized ChatDatabase getInstance(Context context) {
+        if (instance == null) {
+            instance = new ChatDatabase(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ChatDatabase(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        createCacheTables(db);
+        createOutbox(db);
+        createUsers(db);
+    }
+
+    private void createCacheTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_MESSAGES + " (" + MESSAGE_COLUMNS + ")");
+        db.execSQL("CREATE INDEX idx_messages_chat_time ON " + TABLE_MESSAGES + " (chatId, timestamp)");
+
+        db.execSQL("CREATE TABLE " + TABLE_CHAT_SYNC + " ("
+                + "chatId TEXT PRIMARY KEY, "
+                + "lastSyncedTimestamp INTEGER NOT NULL)");
+    }
+
+    // Messages written by this device that the server has not confirmed yet
+    private void createOutbox(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_OUTBOX + " (" + MESSAGE_COLUMNS + ")");
+    }
+
+    // Profiles cached from the users collection, cachedAt drives the per-entry TTL
+    private void createUsers(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_USERS + " ("
+                + "userId TEXT PRIMARY KEY, "
+                + "name TEXT, "
+                + "email TEXT, "
+                + "profileImage TEXT, "
+                + "fcmToken TEXT, "
+                + "updatedAt INTEGER NOT NULL DEFAULT 0, "
+                + "cachedAt INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX idx_users_name ON " + TABLE_USERS + " (name)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Cache tables mirror Firestore and can be rebuilt; the outbox holds unsent user data
+        if (oldVersion < 2) {
+            createOutbox(db);
+        }
+        if (oldVersion < 3) {
+            createUsers(db);
+        } else if (oldVersion < 5) {
+            // Cached without profileImage; rebuilt rather than served incomplete
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS);
+            createUsers(db);
+        }
+        if (oldVersion < 4) {
+            // Sync points were sender timestamps before they moved to the server's syncedAt
+            db.execSQL("DELETE FROM " + TABLE_CHAT_SYNC);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.robiul.chatapp.data;
+
+import com.robiul.chatapp.models.ChatMessage;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hand-written field mapping for messages documents, used for both reads and
+ * writes. Decoding pulls each field on its own instead of copying the whole
+ * document into a map or going through reflection.
+ */
+public final class ChatMessageCodec {
+    public static final String MESSAGE_ID = "messageId";
+    public static final String SENDER_ID = "senderId";
+    public static final String RECEIVER_ID = "receiverId";
+    public static final String MESSAGE = "message";
+    public static final String TIMESTAMP = "timestamp";
+    public static final String MESSAGE_TYPE = "messageType";
+    public static final String IS_SEEN = "isSeen";
+    public static final String CHAT_ID = "chatId";
+    // Set by the server on every write (see MessageBatchWriter); never encoded from the model
+    public static final String SYNCED_AT = "syncedAt";
+
+    private static final int FIELD_COUNT = 8;
+
+    private ChatMessageCodec() {}
+
+    public static ChatMessage decode(FieldReader fields) {
+        ChatMessage message = new ChatMessage();
+        message.setMessageId(fields.getString(MESSAGE_ID));
+        message.setSenderId(fields.getString(SENDER_ID));
+        message.setReceiverId(fields.getString(RECEIVER_ID));
+        message.setMessage(fields.getString(MESSAGE));
+        message.setChatId(fields.getString(CHAT_ID));
+        message.setMessageType(fields.getString(MESSAGE_TYPE));
+        message.setTimestamp(readTimestamp(fields));
+        message.setSeen(fields.getBoolean(IS_SEEN, false));
+        message.setSyncedAt(fields.getLong(SYNCED_AT, 0));
+        return message;
+    }
+
+    // A message without a timestamp is treated as just sent
+    public static long readTimestamp(FieldReader fields) {
+        long timestamp = fields.getLong(TIMESTAMP, -1);
+        return timestamp >= 0 ? timestamp : System.currentTimeMillis();
+    }
+
+    public static Map<String, Object> encode(ChatMessage message) {
+        // Sized so the map never rehashes
+        Map<String, Object> data = new HashMap<>(FIELD_COUNT * 4 / 3 + 1);
+        data.put(MESSAGE_ID, message.getMessageId());
+        data.put(SENDER_ID, message.getSenderId());
+        data.put(RECEIVER_ID, message.getReceiverId());
+        data.put(MESSAGE, message.getMessage());
+        data.put(TIMESTAMP, message.getTimestamp());
+        data.put(MESSAGE_TYPE, message.getMessageType());
+        data.put(IS_SEEN, message.isSeen());
+        data.put(CHAT_ID, message.getChatId());
+        return data;
+    }
+}
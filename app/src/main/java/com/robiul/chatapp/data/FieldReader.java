@@ -0,0 +1,11 @@
+package com.robiul.chatapp.data;
+
+// Reads single fields of a stored document without materializing all of it
+public interface FieldReader {
+    String getString(String field);
+
+    // Numeric field as a long, or fallback when missing or not a number
+    long getLong(String field, long fallback);
+
+    boolean getBoolean(String field, boolean fallback);
+}
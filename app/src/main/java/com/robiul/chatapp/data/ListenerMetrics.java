@@ -0,0 +1,36 @@
+package com.robiul.chatapp.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Counters for shared live listeners; safe to read from any thread
+public class ListenerMetrics {
+    private final AtomicLong active = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong closed = new AtomicLong();
+
+    public void recordOpened() {
+        opened.incrementAndGet();
+        active.incrementAndGet();
+    }
+
+    public void recordClosed() {
+        closed.incrementAndGet();
+        active.decrementAndGet();
+    }
+
+    // An observer joined a listener that was already running
+    public void recordReused() { reused.incrementAndGet(); }
+
+    // Getters
+    public long getActive() { return active.get(); }
+    public long getOpened() { return opened.get(); }
+    public long getReused() { return reused.get(); }
+    public long getClosed() { return closed.get(); }
+
+    @Override
+    public String toString() {
+        return "active=" + getActive() + " opened=" + getOpened()
+                + " reused=" + getReused() + " closed=" + getClosed();
+    }
+}
@@ -0,0 +1,46 @@
+package com.robiul.chatapp.data;
+
+import java.util.Map;
+
+// FieldReader over a plain map, such as an FCM data payload where every value is a string
+public class MapFields implements FieldReader {
+    private final Map<String, ?> data;
+
+    public MapFields(Map<String, ?> data) {
+        this.data = data;
+    }
+
+    @Override
+    public String getString(String field) {
+        Object value = data.get(field);
+        return value instanceof String ? (String) value : null;
+    }
+
+    @Override
+    public long getLong(String field, long fallback) {
+        Object value = data.get(field);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof String) {
+            try {
+                return Long.parseLong((String) value);
+            } catch (NumberFormatException e) {
+                return fallback;
+            }
+        }
+        return fallback;
+    }
+
+    @Override
+    public boolean getBoolean(String field, boolean fallback) {
+        Object value = data.get(field);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof String) {
+            return Boolean.parseBoolean((String) value);
+        }
+        return fallback;
+    }
+}
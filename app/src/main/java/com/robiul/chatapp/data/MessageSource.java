@@ -0,0 +1,36 @@
+package com.robiul.chatapp.data;
+
+import com.robiul.chatapp.models.ChatMessage;
+import com.robiul.chatapp.models.MessageDelta;
+
+import java.util.List;
+
+// Remote side of the message sync (Firestore in the app, a fake in tests)
+public interface MessageSource {
+    /**
+     * Live window of a chat. With afterSyncedAt 0 it is the newest messages by
+     * timestamp; otherwise it is the newest messages the server accepted after
+     * afterSyncedAt (see ChatMessage.getSyncedAt), whatever their timestamp.
+     */
+    Registration listen(String chatId, long afterSyncedAt, int limit, Listener listener);
+
+    // One-off read of the newest messages the server accepted after afterSyncedAt, oldest first
+    void fetchAfter(String chatId, long afterSyncedAt, int limit, FetchCallback callback);
+
+    // One page of messages before (beforeTimestamp, beforeMessageId) in MessageStore.ORDER, oldest first
+    void fetchBefore(String chatId, long beforeTimestamp, String beforeMessageId, int limit, FetchCallback callback);
+
+    interface Registration {
+        void remove();
+    }
+
+    interface Listener {
+        void onDelta(MessageDelta delta);
+        void onError(String error);
+    }
+
+    interface FetchCallback {
+        void onFetched(List<ChatMessage> messages);
+        void onError(String error);
+    }
+}
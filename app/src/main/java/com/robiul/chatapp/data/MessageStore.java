@@ -0,0 +1,30 @@
+package com.robiul.chatapp.data;
+
+import com.robiul.chatapp.models.ChatMessage;
+import com.robiul.chatapp.models.MessageDelta;
+
+import java.util.Comparator;
+import java.util.List;
+
+// On-device message storage, keyed by chatId + timestamp. Lists are oldest first.
+public interface MessageStore {
+    // Order of a chat; messageId breaks timestamp ties so paging never skips a message
+    Comparator<ChatMessage> ORDER = (m1, m2) -> {
+        int byTime = Long.compare(m1.getTimestamp(), m2.getTimestamp());
+        return byTime != 0 ? byTime : m1.getMessageId().compareTo(m2.getMessageId());
+    };
+
+    List<ChatMessage> loadLatest(String chatId, int limit);
+
+    // Messages before (beforeTimestamp, beforeMessageId) in ORDER
+    List<ChatMessage> loadBefore(String chatId, long beforeTimestamp, String beforeMessageId, int limit);
+
+    void apply(String chatId, MessageDelta delta);
+
+    void clearChat(String chatId);
+
+    // Newest syncedAt (server clock) already written for this chat, 0 if never synced
+    long getLastSyncedTimestamp(String chatId);
+
+    void setLastSyncedTimestamp(String chatId, long timestamp);
+}
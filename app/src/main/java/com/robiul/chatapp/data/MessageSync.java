@@ -0,0 +1,191 @@
+package com.robiul.chatapp.data;
+
+import com.robiul.chatapp.models.ChatMessage;
+import com.robiul.chatapp.models.MessageDelta;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Serves a chat from the local store first, then listens to the remote source
+ * for messages the server accepted after the last sync point and writes them
+ * through. The sync point is the server's syncedAt, not the message timestamp:
+ * a message sent late (outbox retry, offline send, sender clock ahead) carries
+ * an old timestamp but still sorts after everything already synced.
+ */
+public class MessageSync {
+    private final MessageStore store;
+    private final MessageSource source;
+    private final Executor ioExecutor;
+    private final Executor mainExecutor;
+
+    public MessageSync(MessageStore store, MessageSource source, Executor ioExecutor, Executor mainExecutor) {
+        this.store = store;
+        this.source = source;
+        this.ioExecutor = ioExecutor;
+        this.mainExecutor = mainExecutor;
+    }
+
+    public MessageSource.Registration open(String chatId, int pageSize, MessageSource.Listener listener) {
+        SyncRegistration registration = new SyncRegistration();
+
+        ioExecutor.execute(() -> {
+            List<ChatMessage> cached = store.loadLatest(chatId, pageSize);
+            long since = store.getLastSyncedTimestamp(chatId);
+
+            mainExecutor.execute(() -> {
+                if (registration.removed) return;
+
+                if (!cached.isEmpty()) {
+                    listener.onDelta(MessageDelta.ofAdded(cached));
+                }
+                registration.remote = source.listen(chatId, since, pageSize,
+                        new RemoteListener(chatId, pageSize, since, cached, listener));
+            });
+        });
+        return registration;
+    }
+
+    // Paged by (timestamp, messageId), so messages sharing the boundary millisecond are all kept
+    public void loadOlder(String chatId, long beforeTimestamp, String beforeMessageId, int pageSize,
+                          MessageSource.FetchCallback callback) {
+        ioExecutor.execute(() -> {
+            List<ChatMessage> local = store.loadBefore(chatId, beforeTimestamp, beforeMessageId, pageSize);
+            if (local.size() >= pageSize) {
+                mainExecutor.execute(() -> callback.onFetched(local));
+                return;
+            }
+
+            // Not enough on disk, page in from the server and keep it for next time
+            mainExecutor.execute(() -> source.fetchBefore(chatId, beforeTimestamp, beforeMessageId, pageSize,
+                    new MessageSource.FetchCallback() {
+                        @Override
+                        public void onFetched(List<ChatMessage> messages) {
+                            MessageDelta page = MessageDelta.ofAdded(messages);
+                            ioExecutor.execute(() -> store.apply(chatId, page));
+                            callback.onFetched(messages);
+                        }
+
+                        @Override
+                        public void onError(String error) {
+                            callback.onError(error);
+                        }
+                    }));
+        });
+    }
+
+    /**
+     * Stores a message that arrived outside any listener, such as in a push, so the
+     * chat opens on it without a round trip. What the server accepted since the last
+     * sync point is then fetched in the background; when it all fits in one page the
+     * sync point moves forward, otherwise the store restarts from that page.
+     */
+    public void writeThrough(ChatMessage message, int pageSize) {
+        String chatId = message.getChatId();
+        ioExecutor.execute(() -> {
+            store.apply(chatId, MessageDelta.ofAdded(Collections.singletonList(message)));
+            long since = store.getLastSyncedTimestamp(chatId);
+            // Never synced: the first open loads the newest window anyway
+            if (since == 0) return;
+
+            mainExecutor.execute(() -> source.fetchAfter(chatId, since, pageSize,
+                    new MessageSource.FetchCallback() {
+                        @Override
+                        public void onFetched(List<ChatMessage> messages) {
+                            boolean contiguous = messages.size() < pageSize;
+                            long syncedUpTo = newestSyncedAt(since, messages);
+
+                            ioExecutor.execute(() -> {
+                                if (!contiguous) {
+                                    store.clearChat(chatId);
+                                    store.apply(chatId, MessageDelta.ofAdded(Collections.singletonList(message)));
+                                }
+                                store.apply(chatId, MessageDelta.ofAdded(messages));
+                                // A live listener may have moved it further meanwhile
+                                store.setLastSyncedTimestamp(chatId,
+                                        Math.max(syncedUpTo, store.getLastSyncedTimestamp(chatId)));
+                            });
+                        }
+
+                        @Override
+                        public void onError(String error) {
+                            // The stored message still shows; the rest syncs when the chat opens
+                        }
+                    }));
+        });
+    }
+
+    // Messages not yet accepted by the server have no syncedAt and leave the sync point alone
+    private static long newestSyncedAt(long since, List<ChatMessage> messages) {
+        long newest = since;
+        for (ChatMessage message : messages) newest = Math.max(newest, message.getSyncedAt());
+        return newest;
+    }
+
+    private class RemoteListener implements MessageSource.Listener {
+        private final String chatId;
+        private final int pageSize;
+        private final long since;
+        private final List<ChatMessage> cached;
+        private final MessageSource.Listener listener;
+        private boolean first = true;
+
+        RemoteListener(String chatId, int pageSize, long since, List<ChatMessage> cached,
+                       MessageSource.Listener listener) {
+            this.chatId = chatId;
+            this.pageSize = pageSize;
+            this.since = since;
+            this.cached = cached;
+            this.listener = listener;
+        }
+
+        @Override
+        public void onDelta(MessageDelta delta) {
+            // A full first window after a sync point means messages were missed in between,
+            // so the stored history is no longer contiguous with the server
+            boolean gap = first && since > 0 && delta.getAdded().size() >= pageSize;
+            // A window by timestamp (first sync) misses late messages that land below it,
+            // so only its first snapshot is known complete up to its newest syncedAt
+            boolean advance = since > 0 || first;
+            first = false;
+
+            long syncedUpTo = Math.max(newestSyncedAt(since, delta.getAdded()),
+                    newestSyncedAt(since, delta.getModified()));
+
+            ioExecutor.execute(() -> {
+                if (gap) store.clearChat(chatId);
+                store.apply(chatId, delta);
+                if (advance) store.setLastSyncedTimestamp(chatId, syncedUpTo);
+            });
+
+            if (gap) {
+                List<ChatMessage> removed = new ArrayList<>(delta.getRemoved());
+                removed.addAll(cached);
+                listener.onDelta(new MessageDelta(delta.getAdded(), delta.getModified(), removed));
+            } else {
+                listener.onDelta(delta);
+            }
+        }
+
+        @Override
+        public void onError(String error) {
+            listener.onError(error);
+        }
+    }
+
+    private static class SyncRegistration implements MessageSource.Registration {
+        volatile boolean removed;
+        MessageSource.Registration remote;
+
+        @Override
+        public void remove() {
+            removed = true;
+            if (remote != null) {
+                remote.remove();
+                remote = null;
+            }
+        }
+    }
+}
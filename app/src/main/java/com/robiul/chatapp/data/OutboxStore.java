@@ -0,0 +1,75 @@
+package com.robiul.chatapp.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.robiul.chatapp.models.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Durable queue of outgoing messages, keyed by the client-generated messageId.
+// Call from a background thread; every method touches the disk.
+public class OutboxStore {
+    private static OutboxStore instance;
+    private final ChatDatabase database;
+
+    public static synchronized OutboxStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new OutboxStore(ChatDatabase.getInstance(context));
+        }
+        return instance;
+    }
+
+    private OutboxStore(ChatDatabase database) {
+        this.database = database;
+    }
+
+    public void enqueue(ChatMessage message) {
+        // Ignore on conflict: a retried send must not duplicate the queued copy
+        database.getWritableDatabase().insertWithOnConflict(ChatDatabase.TABLE_OUTBOX, null,
+                SqliteMessageStore.toValues(message), SQLiteDatabase.CONFLICT_IGNORE);
+    }
+
+    public List<ChatMessage> loadAll() {
+        return query(null, null);
+    }
+
+    public List<ChatMessage> loadForChat(String chatId) {
+        return query("chatId = ?", new String[]{chatId});
+    }
+
+    private List<ChatMessage> query(String selection, String[] args) {
+        List<ChatMessage> messages = new ArrayList<>();
+        try (Cursor cursor = database.getReadableDatabase().query(ChatDatabase.TABLE_OUTBOX,
+                SqliteMessageStore.COLUMNS, selection, args, null, null, "timestamp ASC")) {
+            while (cursor.moveToNext()) {
+                ChatMessage message = SqliteMessageStore.readMessage(cursor);
+                message.setPending(true);
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    public void remove(List<ChatMessage> messages) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (ChatMessage message : messages) {
+                db.delete(ChatDatabase.TABLE_OUTBOX, "messageId = ?", new String[]{message.getMessageId()});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public boolean isEmpty() {
+        try (Cursor cursor = database.getReadableDatabase().rawQuery(
+                "SELECT 1 FROM " + ChatDatabase.TABLE_OUTBOX + " LIMIT 1", null)) {
+            return !cursor.moveToFirst();
+        }
+    }
+}
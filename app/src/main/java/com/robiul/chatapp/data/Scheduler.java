@@ -0,0 +1,7 @@
+package com.robiul.chatapp.data;
+
+// Delayed work on one thread (a main-thread Handler in the app, a list of tasks in tests)
+public interface Scheduler {
+    void postDelayed(Runnable task, long delayMs);
+    void cancel(Runnable task);
+}
@@ -0,0 +1,141 @@
+package com.robiul.chatapp.data;
+
+import com.robiul.chatapp.models.ChatMessage;
+import com.robiul.chatapp.models.MessageDelta;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One live message sync per chat and page size, shared by everything observing
+ * that chat with that page size. A larger page gets its own sync rather than a
+ * replay cut to the first observer's page.
+ * Observers are ref-counted: when the last one leaves, the sync lingers for a
+ * while so reopening the chat reuses the warm listener, and is closed after.
+ * An observer joining a running feed first gets the messages it already holds.
+ * Main thread only.
+ */
+public class SharedMessageFeeds {
+    private final MessageSync sync;
+    private final Scheduler scheduler;
+    private final long lingerMs;
+    private final ListenerMetrics metrics = new ListenerMetrics();
+    private final Map<String, Feed> feeds = new HashMap<>();
+
+    public SharedMessageFeeds(MessageSync sync, Scheduler scheduler, long lingerMs) {
+        this.sync = sync;
+        this.scheduler = scheduler;
+        this.lingerMs = lingerMs;
+    }
+
+    public MessageSource.Registration observe(String chatId, int pageSize, MessageSource.Listener observer) {
+        String key = chatId + "#" + pageSize;
+        Feed feed = feeds.get(key);
+        if (feed == null) {
+            feed = new Feed(key, chatId, pageSize);
+            feeds.put(key, feed);
+            metrics.recordOpened();
+            // Attached first, the sync may deliver before open returns
+            feed.observers.add(observer);
+            MessageSource.Registration registration = sync.open(chatId, pageSize, feed);
+            // An error during open has already dropped the feed
+            if (feeds.get(key) == feed) {
+                feed.registration = registration;
+            } else {
+                registration.remove();
+            }
+        } else {
+            metrics.recordReused();
+            scheduler.cancel(feed.closeTask);
+            feed.replayTo(observer);
+            feed.observers.add(observer);
+        }
+
+        Feed joined = feed;
+        return () -> {
+            if (!joined.observers.remove(observer) || !joined.observers.isEmpty()) return;
+            scheduler.postDelayed(joined.closeTask, lingerMs);
+        };
+    }
+
+    // Drops every feed right away, e.g. when the signed-in user changes
+    public void closeAll() {
+        for (Feed feed : new ArrayList<>(feeds.values())) {
+            scheduler.cancel(feed.closeTask);
+            feed.observers.clear();
+            close(feed);
+        }
+    }
+
+    private void close(Feed feed) {
+        if (feeds.get(feed.key) != feed) return;
+        feeds.remove(feed.key);
+        if (feed.registration != null) feed.registration.remove();
+        metrics.recordClosed();
+    }
+
+    public ListenerMetrics getMetrics() {
+        return metrics;
+    }
+
+    private class Feed implements MessageSource.Listener {
+        final String key;
+        final String chatId;
+        final int pageSize;
+        final List<MessageSource.Listener> observers = new ArrayList<>();
+        // What the feed has delivered so far, for observers that join later
+        final Map<String, ChatMessage> window = new LinkedHashMap<>();
+        final Runnable closeTask = () -> close(this);
+        MessageSource.Registration registration;
+
+        Feed(String key, String chatId, int pageSize) {
+            this.key = key;
+            this.chatId = chatId;
+            this.pageSize = pageSize;
+        }
+
+        void replayTo(MessageSource.Listener observer) {
+            if (window.isEmpty()) return;
+            observer.onDelta(MessageDelta.ofAdded(newest(pageSize)));
+        }
+
+        private List<ChatMessage> newest(int count) {
+            List<ChatMessage> messages = new ArrayList<>(window.values());
+            messages.sort(MessageStore.ORDER);
+            return messages.size() <= count ? messages
+                    : new ArrayList<>(messages.subList(messages.size() - count, messages.size()));
+        }
+
+        @Override
+        public void onDelta(MessageDelta delta) {
+            for (ChatMessage message : delta.getRemoved()) window.remove(message.getMessageId());
+            for (ChatMessage message : delta.getAdded()) window.put(message.getMessageId(), message);
+            for (ChatMessage message : delta.getModified()) window.put(message.getMessageId(), message);
+            // Only the newest page is ever replayed; older ones can be paged back in
+            if (window.size() > pageSize * 2) {
+                List<ChatMessage> kept = newest(pageSize);
+                window.clear();
+                for (ChatMessage message : kept) window.put(message.getMessageId(), message);
+            }
+
+            for (MessageSource.Listener observer : new ArrayList<>(observers)) {
+                observer.onDelta(delta);
+            }
+        }
+
+        // A listener error is terminal; dropped first so the next observe opens a fresh sync
+        @Override
+        public void onError(String error) {
+            List<MessageSource.Listener> failed = new ArrayList<>(observers);
+            scheduler.cancel(closeTask);
+            observers.clear();
+            close(this);
+            for (MessageSource.Listener observer : failed) {
+                observer.onError(error);
+            }
+        }
+    }
+}
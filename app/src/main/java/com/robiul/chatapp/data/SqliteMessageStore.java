@@ -0,0 +1,135 @@
+package com.robiul.chatapp.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.robiul.chatapp.models.ChatMessage;
+import com.robiul.chatapp.models.MessageDelta;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Call from a background thread; every method touches the disk
+public class SqliteMessageStore implements MessageStore {
+    static final String[] COLUMNS = {
+            "messageId", "chatId", "senderId", "receiverId", "message", "timestamp", "messageType", "isSeen"
+    };
+
+    private static SqliteMessageStore instance;
+    private final ChatDatabase database;
+
+    public static synchronized SqliteMessageStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new SqliteMessageStore(ChatDatabase.getInstance(context));
+        }
+        return instance;
+    }
+
+    private SqliteMessageStore(ChatDatabase database) {
+        this.database = database;
+    }
+
+    @Override
+    public List<ChatMessage> loadLatest(String chatId, int limit) {
+        return query("chatId = ?", new String[]{chatId}, limit);
+    }
+
+    @Override
+    public List<ChatMessage> loadBefore(String chatId, long beforeTimestamp, String beforeMessageId, int limit) {
+        String before = String.valueOf(beforeTimestamp);
+        return query("chatId = ? AND (timestamp < ? OR (timestamp = ? AND messageId < ?))",
+                new String[]{chatId, before, before, beforeMessageId}, limit);
+    }
+
+    private List<ChatMessage> query(String selection, String[] args, int limit) {
+        List<ChatMessage> messages = new ArrayList<>();
+        try (Cursor cursor = database.getReadableDatabase().query(ChatDatabase.TABLE_MESSAGES, COLUMNS,
+                selection, args, null, null, "timestamp DESC, messageId DESC", String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                messages.add(readMessage(cursor));
+            }
+        }
+        // Read newest first to apply the limit, return oldest first
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    @Override
+    public void apply(String chatId, MessageDelta delta) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (ChatMessage message : delta.getAdded()) upsert(db, chatId, message);
+            for (ChatMessage message : delta.getModified()) upsert(db, chatId, message);
+            for (ChatMessage message : delta.getRemoved()) {
+                db.delete(ChatDatabase.TABLE_MESSAGES, "messageId = ?", new String[]{message.getMessageId()});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private void upsert(SQLiteDatabase db, String chatId, ChatMessage message) {
+        ContentValues values = toValues(message);
+        values.put("chatId", chatId);
+        db.insertWithOnConflict(ChatDatabase.TABLE_MESSAGES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    // Row layout shared with the outbox table
+    static ChatMessage readMessage(Cursor cursor) {
+        ChatMessage message = new ChatMessage();
+        message.setMessageId(cursor.getString(0));
+        message.setChatId(cursor.getString(1));
+        message.setSenderId(cursor.getString(2));
+        message.setReceiverId(cursor.getString(3));
+        message.setMessage(cursor.getString(4));
+        message.setTimestamp(cursor.getLong(5));
+        message.setMessageType(cursor.getString(6));
+        message.setSeen(cursor.getInt(7) != 0);
+        return message;
+    }
+
+    static ContentValues toValues(ChatMessage message) {
+        ContentValues values = new ContentValues();
+        values.put("messageId", message.getMessageId());
+        values.put("chatId", message.getChatId());
+        values.put("senderId", message.getSenderId());
+        values.put("receiverId", message.getReceiverId());
+        values.put("message", message.getMessage());
+        values.put("timestamp", message.getTimestamp());
+        values.put("messageType", message.getMessageType());
+        values.put("isSeen", message.isSeen() ? 1 : 0);
+        return values;
+    }
+
+    @Override
+    public void clearChat(String chatId) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        db.delete(ChatDatabase.TABLE_MESSAGES, "chatId = ?", new String[]{chatId});
+        db.delete(ChatDatabase.TABLE_CHAT_SYNC, "chatId = ?", new String[]{chatId});
+    }
+
+    @Override
+    public long getLastSyncedTimestamp(String chatId) {
+        try (Cursor cursor = database.getReadableDatabase().query(ChatDatabase.TABLE_CHAT_SYNC,
+                new String[]{"lastSyncedTimestamp"}, "chatId = ?", new String[]{chatId},
+                null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    @Override
+    public void setLastSyncedTimestamp(String chatId, long timestamp) {
+        // Only ever move the sync point forward (no UPSERT before API 30)
+        SQLiteDatabase db = database.getWritableDatabase();
+        db.execSQL("INSERT OR IGNORE INTO " + ChatDatabase.TABLE_CHAT_SYNC
+                + " (chatId, lastSyncedTimestamp) VALUES (?, ?)", new Object[]{chatId, timestamp});
+        db.execSQL("UPDATE " + ChatDatabase.TABLE_CHAT_SYNC
+                + " SET lastSyncedTimestamp = MAX(lastSyncedTimestamp, ?) WHERE chatId = ?",
+                new Object[]{timestamp, chatId});
+    }
+}
@@ -0,0 +1,153 @@
+package com.robiul.chatapp.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.robiul.chatapp.models.User;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Two-tier cache of user profiles keyed by userId: an in-memory LRU in front of
+ * the SQLite users table. Entries older than the TTL count as misses. Methods
+ * that may hit the disk must be called from a background thread.
+ */
+public class UserCache {
+    public static final long DEFAULT_TTL_MS = 24 * 60 * 60 * 1000L;
+    private static final int MEMORY_CAPACITY = 500;
+    private static final String PREFS_NAME = "user_cache";
+    // Renamed when the cursor moved to server time, so local-clock values from older builds are ignored
+    private static final String KEY_LAST_REFRESH = "refresh_cursor_updated_at";
+    private static final String KEY_LAST_REFRESH_USER = "refresh_cursor_user_id";
+
+    private static UserCache instance;
+
+    private final UserStore disk;
+    private final SharedPreferences prefs;
+    private final long ttlMs;
+    private final CacheMetrics metrics = new CacheMetrics();
+    private final Map<String, Entry> memory = new LinkedHashMap<String, Entry>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MEMORY_CAPACITY;
+        }
+    };
+
+    public static synchronized UserCache getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = new UserCache(UserStore.getInstance(appContext),
+                    appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE), DEFAULT_TTL_MS);
+        }
+        return instance;
+    }
+
+    private UserCache(UserStore disk, SharedPreferences prefs, long ttlMs) {
+        this.disk = disk;
+        this.prefs = prefs;
+        this.ttlMs = ttlMs;
+    }
+
+    private boolean isFresh(Entry entry) {
+        return System.currentTimeMillis() - entry.cachedAt < ttlMs;
+    }
+
+    // Memory only, safe on the main thread
+    public synchronized User getIfPresent(String userId) {
+        Entry entry = memory.get(userId);
+        if (entry != null && isFresh(entry)) {
+            metrics.recordHit();
+            return entry.user;
+        }
+        return null;
+    }
+
+    // Memory, then disk
+    public User get(String userId) {
+        User user = getIfPresent(userId);
+        if (user != null) return user;
+
+        Entry entry = disk.get(userId);
+        if (entry != null && isFresh(entry)) {
+            synchronized (this) {
+                memory.put(userId, entry);
+            }
+            metrics.recordHit();
+            return entry.user;
+        }
+        metrics.recordMiss();
+        return null;
+    }
+
+    // Fresh cached users matching the name prefix, for an instant first page
+    public List<User> loadPage(String prefix, int limit) {
+        List<Entry> entries = disk.loadPage(prefix, System.currentTimeMillis() - ttlMs, limit);
+        List<User> users = new ArrayList<>(entries.size());
+        synchronized (this) {
+            for (Entry entry : entries) {
+                memory.put(entry.user.getUserId(), entry);
+                users.add(entry.user);
+            }
+        }
+        if (users.isEmpty()) {
+            metrics.recordMiss();
+        } else {
+            metrics.recordHit();
+        }
+        return users;
+    }
+
+    public void putAll(List<User> users) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            for (User user : users) {
+                memory.put(user.getUserId(), new Entry(user, now));
+            }
+        }
+        disk.putAll(users, now);
+    }
+
+    // Delta refresh cursor: (updatedAt, userId) of the last profile refreshed, 0 until seeded
+    public long getLastRefreshUpdatedAt() {
+        return prefs.getLong(KEY_LAST_REFRESH, 0);
+    }
+
+    public String getLastRefreshUserId() {
+        return prefs.getString(KEY_LAST_REFRESH_USER, "");
+    }
+
+    // Only the first page seeds it: a later page's newest could pass changes to profiles already cached
+    public synchronized void seedLastRefresh(long updatedAt) {
+        if (getLastRefreshUpdatedAt() == 0) {
+            setLastRefresh(updatedAt, "");
+        }
+    }
+
+    // Only ever moves forward
+    public synchronized void setLastRefresh(long updatedAt, String userId) {
+        long current = getLastRefreshUpdatedAt();
+        if (updatedAt > current || (updatedAt == current && userId.compareTo(getLastRefreshUserId()) > 0)) {
+            prefs.edit()
+                    .putLong(KEY_LAST_REFRESH, updatedAt)
+                    .putString(KEY_LAST_REFRESH_USER, userId)
+                    .apply();
+        }
+    }
+
+    public CacheMetrics getMetrics() {
+        return metrics;
+    }
+
+    public static class Entry {
+        final User user;
+        final long cachedAt;
+
+        public Entry(User user, long cachedAt) {
+            this.user = user;
+            this.cachedAt = cachedAt;
+        }
+    }
+}
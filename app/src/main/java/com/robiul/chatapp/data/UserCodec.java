@@ -0,0 +1,42 @@
+package com.robiul.chatapp.data;
+
+import com.robiul.chatapp.models.User;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Hand-written field mapping for users documents, in place of the reflective POJO mapper
+public final class UserCodec {
+    public static final String USER_ID = "userId";
+    public static final String EMAIL = "email";
+    public static final String NAME = "name";
+    public static final String PROFILE_IMAGE = "profileImage";
+    public static final String FCM_TOKEN = "fcmToken";
+    public static final String UPDATED_AT = "updatedAt";
+
+    private static final int FIELD_COUNT = 6;
+
+    private UserCodec() {}
+
+    public static User decode(FieldReader fields) {
+        User user = new User();
+        user.setUserId(fields.getString(USER_ID));
+        user.setEmail(fields.getString(EMAIL));
+        user.setName(fields.getString(NAME));
+        user.setProfileImage(fields.getString(PROFILE_IMAGE));
+        user.setFcmToken(fields.getString(FCM_TOKEN));
+        user.setUpdatedAt(fields.getLong(UPDATED_AT, 0));
+        return user;
+    }
+
+    public static Map<String, Object> encode(User user) {
+        Map<String, Object> data = new HashMap<>(FIELD_COUNT * 4 / 3 + 1);
+        data.put(USER_ID, user.getUserId());
+        data.put(EMAIL, user.getEmail());
+        data.put(NAME, user.getName());
+        data.put(PROFILE_IMAGE, user.getProfileImage());
+        data.put(FCM_TOKEN, user.getFcmToken());
+        data.put(UPDATED_AT, user.getUpdatedAt());
+        return data;
+    }
+}
@@ -0,0 +1,81 @@
+package com.robiul.chatapp.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.robiul.chatapp.models.User;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Disk tier of the user cache. Call from a background thread.
+public class UserStore {
+    private static final String[] COLUMNS = {"userId", "name", "email", "profileImage", "fcmToken", "updatedAt", "cachedAt"};
+
+    private static UserStore instance;
+    private final ChatDatabase database;
+
+    public static synchronized UserStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new UserStore(ChatDatabase.getInstance(context));
+        }
+        return instance;
+    }
+
+    private UserStore(ChatDatabase database) {
+        this.database = database;
+    }
+
+    // Returns the user and when it was cached, or null
+    public UserCache.Entry get(String userId) {
+        try (Cursor cursor = database.getReadableDatabase().query(ChatDatabase.TABLE_USERS, COLUMNS,
+                "userId = ?", new String[]{userId}, null, null, null)) {
+            return cursor.moveToFirst() ? readEntry(cursor) : null;
+        }
+    }
+
+    // Users cached after freshAfter whose name starts with prefix, ordered by name
+    public List<UserCache.Entry> loadPage(String prefix, long freshAfter, int limit) {
+        List<UserCache.Entry> entries = new ArrayList<>();
+        try (Cursor cursor = database.getReadableDatabase().query(ChatDatabase.TABLE_USERS, COLUMNS,
+                "name >= ? AND name < ? AND cachedAt > ?",
+                new String[]{prefix, prefix + "\uf8ff", String.valueOf(freshAfter)},
+                null, null, "name ASC", String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                entries.add(readEntry(cursor));
+            }
+        }
+        return entries;
+    }
+
+    public void putAll(List<User> users, long cachedAt) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (User user : users) {
+                ContentValues values = new ContentValues();
+                values.put("userId", user.getUserId());
+                values.put("name", user.getName());
+                values.put("email", user.getEmail());
+                values.put("profileImage", user.getProfileImage());
+                values.put("fcmToken", user.getFcmToken());
+                values.put("updatedAt", user.getUpdatedAt());
+                values.put("cachedAt", cachedAt);
+                db.insertWithOnConflict(ChatDatabase.TABLE_USERS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private UserCache.Entry readEntry(Cursor cursor) {
+        User user = new User(cursor.getString(0), cursor.getString(2), cursor.getString(1));
+        user.setProfileImage(cursor.getString(3));
+        user.setFcmToken(cursor.getString(4));
+        user.setUpdatedAt(cursor.getLong(5));
+        return new UserCache.Entry(user, cursor.getLong(6));
+    }
+}
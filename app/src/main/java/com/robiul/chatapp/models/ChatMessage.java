@@ -1,5 +1,7 @@
 package com.robiul.chatapp.models;
 
+import java.util.Objects;
+
 public class ChatMessage {
     private String messageId;
     private String senderId;
@@ -9,6 +11,10 @@ public class ChatMessage {
     private String messageType;
     private boolean isSeen;
     private String chatId;
+    // Local only: written on this device but not yet confirmed by the server
+    private boolean pending;
+    // Server clock when the message was written, 0 until the server has it
+    private long syncedAt;
 
     public ChatMessage() {}
 
@@ -45,4 +51,33 @@ public class ChatMessage {
 
     public String getChatId() { return chatId; }
     public void setChatId(String chatId) { this.chatId = chatId; }
-}
\ No newline at end of file
+
+    public boolean isPending() { return pending; }
+    public void setPending(boolean pending) { this.pending = pending; }
+
+    public long getSyncedAt() { return syncedAt; }
+    public void setSyncedAt(long syncedAt) { this.syncedAt = syncedAt; }
+
+    // Content equality, so list diffing can tell an unchanged message from an edited one.
+    // syncedAt is sync bookkeeping, not content, and is left out.
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ChatMessage)) return false;
+        ChatMessage other = (ChatMessage) o;
+        return timestamp == other.timestamp
+                && isSeen == other.isSeen
+                && pending == other.pending
+                && Objects.equals(messageId, other.messageId)
+                && Objects.equals(senderId, other.senderId)
+                && Objects.equals(receiverId, other.receiverId)
+                && Objects.equals(message, other.message)
+                && Objects.equals(messageType, other.messageType)
+                && Objects.equals(chatId, other.chatId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(messageId, senderId, receiverId, message, timestamp, messageType, isSeen, chatId, pending);
+    }
+}
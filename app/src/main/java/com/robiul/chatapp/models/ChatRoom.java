@@ -0,0 +1,43 @@
+package com.robiul.chatapp.models;
+
+import java.util.List;
+import java.util.Map;
+
+public class ChatRoom {
+    private String chatId;
+    private List<String> participants;
+    private Map<String, String> participantNames;
+    private String lastMessage;
+    private long lastMessageTime;
+    private String lastMessageSender;
+
+    public ChatRoom() {}
+
+    // Getters and setters
+    public String getChatId() { return chatId; }
+    public void setChatId(String chatId) { this.chatId = chatId; }
+
+    public List<String> getParticipants() { return participants; }
+    public void setParticipants(List<String> participants) { this.participants = participants; }
+
+    public Map<String, String> getParticipantNames() { return participantNames; }
+    public void setParticipantNames(Map<String, String> participantNames) { this.participantNames = participantNames; }
+
+    public String getLastMessage() { return lastMessage; }
+    public void setLastMessage(String lastMessage) { this.lastMessage = lastMessage; }
+
+    public long getLastMessageTime() { return lastMessageTime; }
+    public void setLastMessageTime(long lastMessageTime) { this.lastMessageTime = lastMessageTime; }
+
+    public String getLastMessageSender() { return lastMessageSender; }
+    public void setLastMessageSender(String lastMessageSender) { this.lastMessageSender = lastMessageSender; }
+
+    public String getOtherParticipant(String currentUserId) {
+        if (participants != null) {
+            for (String participant : participants) {
+                if (!participant.equals(currentUserId)) return participant;
+            }
+        }
+        return currentUserId;
+    }
+}
@@ -0,0 +1,34 @@
+package com.robiul.chatapp.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Changes from one snapshot of a chat's messages, in place of the full list
+public class MessageDelta {
+    private final List<ChatMessage> added;
+    private final List<ChatMessage> modified;
+    private final List<ChatMessage> removed;
+
+    public MessageDelta() {
+        this(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+    }
+
+    public MessageDelta(List<ChatMessage> added, List<ChatMessage> modified, List<ChatMessage> removed) {
+        this.added = added;
+        this.modified = modified;
+        this.removed = removed;
+    }
+
+    public static MessageDelta ofAdded(List<ChatMessage> added) {
+        return new MessageDelta(added, new ArrayList<>(), new ArrayList<>());
+    }
+
+    // Getters
+    public List<ChatMessage> getAdded() { return added; }
+    public List<ChatMessage> getModified() { return modified; }
+    public List<ChatMessage> getRemoved() { return removed; }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && modified.isEmpty() && removed.isEmpty();
+    }
+}
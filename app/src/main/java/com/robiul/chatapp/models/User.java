@@ -1,11 +1,15 @@
 package com.robiul.chatapp.models;
 
+import java.util.Objects;
+
 public class User {
     private String userId;
     private String email;
     private String name;
     private String profileImage;
     private String fcmToken;
+    // Last profile change, drives the delta refresh of the local user cache
+    private long updatedAt;
 
     public User() {}
 
@@ -30,4 +34,26 @@ public class User {
 
     public String getFcmToken() { return fcmToken; }
     public void setFcmToken(String fcmToken) { this.fcmToken = fcmToken; }
-}
\ No newline at end of file
+
+    public long getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(long updatedAt) { this.updatedAt = updatedAt; }
+
+    // Content equality, so list diffing only rebinds profiles that changed
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof User)) return false;
+        User other = (User) o;
+        return updatedAt == other.updatedAt
+                && Objects.equals(userId, other.userId)
+                && Objects.equals(email, other.email)
+                && Objects.equals(name, other.name)
+                && Objects.equals(profileImage, other.profileImage)
+                && Objects.equals(fcmToken, other.fcmToken);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(userId, email, name, profileImage, fcmToken, updatedAt);
+    }
+}
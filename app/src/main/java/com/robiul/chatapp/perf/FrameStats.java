@@ -0,0 +1,75 @@
+package com.robiul.chatapp.perf;
+
+import android.app.Activity;
+import android.content.pm.ApplicationInfo;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.view.Display;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+/**
+ * Counts rendered and janky frames of a window between start and stop, on
+ * debuggable builds only. A frame is janky when it takes longer than one
+ * refresh interval of the display.
+ */
+public class FrameStats {
+    private static final String TAG = "FrameStats";
+    private static HandlerThread metricsThread;
+
+    private final String name;
+    private final boolean enabled;
+    private final Window window;
+    private Window.OnFrameMetricsAvailableListener listener;
+    // Written on the metrics thread, read when stopping
+    private volatile int frames;
+    private volatile int jankyFrames;
+    private volatile long slowestNanos;
+
+    public FrameStats(Activity activity, String name) {
+        this.name = name;
+        this.enabled = (activity.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        this.window = activity.getWindow();
+    }
+
+    private static synchronized Handler metricsHandler() {
+        if (metricsThread == null) {
+            metricsThread = new HandlerThread("frame-metrics");
+            metricsThread.start();
+        }
+        return new Handler(metricsThread.getLooper());
+    }
+
+    public void start() {
+        if (!enabled || listener != null) return;
+
+        frames = 0;
+        jankyFrames = 0;
+        slowestNanos = 0;
+        Display display = window.getWindowManager().getDefaultDisplay();
+        float refreshRate = display != null && display.getRefreshRate() > 0 ? display.getRefreshRate() : 60f;
+        long budgetNanos = (long) (1_000_000_000L / refreshRate);
+
+        listener = (w, metrics, dropCount) -> {
+            long total = metrics.getMetric(FrameMetrics.TOTAL_DURATION);
+            frames++;
+            if (total > budgetNanos) jankyFrames++;
+            if (total > slowestNanos) slowestNanos = total;
+        };
+        window.addOnFrameMetricsAvailableListener(listener, metricsHandler());
+    }
+
+    // Logs the frames seen since start
+    public void stop() {
+        if (listener == null) return;
+        window.removeOnFrameMetricsAvailableListener(listener);
+        listener = null;
+
+        int total = frames;
+        int janky = jankyFrames;
+        Log.d(TAG, name + ": frames=" + total + " janky=" + janky
+                + String.format(" (%.1f%%)", total == 0 ? 0f : 100f * janky / total)
+                + " slowest=" + (slowestNanos / 1_000_000) + "ms");
+    }
+}
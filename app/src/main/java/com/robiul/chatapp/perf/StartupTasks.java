@@ -0,0 +1,183 @@
+package com.robiul.chatapp.perf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs a screen's startup work in three groups: critical tasks inline before the
+ * first frame, background tasks on a worker in parallel from the start, and the
+ * rest on the main thread once the first frame is out, one message per task so
+ * input can get in between. Every task is timed; the report goes to the listener
+ * once all tasks have run and the first frame has been drawn.
+ */
+public class StartupTasks {
+    public enum Kind { CRITICAL, BACKGROUND, AFTER_FIRST_FRAME }
+
+    private final Executor mainExecutor;
+    private final Executor backgroundExecutor;
+    private final LongSupplier clockMs;
+    private final Listener listener;
+    private final List<Task> tasks = new ArrayList<>();
+    private final List<Timing> timings = new ArrayList<>();
+    private long startMs = -1;
+    private long firstFrameMs = -1;
+    private int pending;
+    private volatile boolean cancelled;
+
+    public StartupTasks(Executor mainExecutor, Executor backgroundExecutor, LongSupplier clockMs, Listener listener) {
+        this.mainExecutor = mainExecutor;
+        this.backgroundExecutor = backgroundExecutor;
+        this.clockMs = clockMs;
+        this.listener = listener;
+    }
+
+    public StartupTasks add(String name, Kind kind, Runnable work) {
+        if (startMs >= 0) throw new IllegalStateException("Already started");
+        tasks.add(new Task(name, kind, work));
+        return this;
+    }
+
+    // Main thread, from onCreate. Returns once the critical tasks are done.
+    public void start() {
+        synchronized (this) {
+            startMs = clockMs.getAsLong();
+            pending = tasks.size();
+        }
+        for (Task task : tasks) {
+            if (task.kind == Kind.BACKGROUND) backgroundExecutor.execute(() -> run(task));
+        }
+        for (Task task : tasks) {
+            if (task.kind == Kind.CRITICAL) run(task);
+        }
+    }
+
+    // Main thread, once the first frame has been drawn
+    public void onFirstFrame() {
+        synchronized (this) {
+            if (startMs < 0 || firstFrameMs >= 0) return;
+            firstFrameMs = clockMs.getAsLong() - startMs;
+        }
+        for (Task task : tasks) {
+            if (task.kind == Kind.AFTER_FIRST_FRAME) mainExecutor.execute(() -> run(task));
+        }
+        finishIfDone();
+    }
+
+    // The screen is going away; tasks that haven't started are dropped and no report is made
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private void run(Task task) {
+        if (cancelled) return;
+        long begin = clockMs.getAsLong();
+        String error = null;
+        listener.onTaskStarted(task.name);
+        try {
+            task.work.run();
+        } catch (RuntimeException e) {
+            // The screen can't come up without a critical task; anything else
+            // failing must not hold up the rest of startup
+            if (task.kind == Kind.CRITICAL) throw e;
+            error = e.toString();
+        } finally {
+            listener.onTaskFinished(task.name);
+        }
+        long end = clockMs.getAsLong();
+
+        synchronized (this) {
+            timings.add(new Timing(task.name, task.kind, Thread.currentThread().getName(),
+                    begin - startMs, end - begin, error));
+            pending--;
+        }
+        finishIfDone();
+    }
+
+    private void finishIfDone() {
+        Report report;
+        synchronized (this) {
+            if (cancelled || pending > 0 || firstFrameMs < 0) return;
+            // Only the last of the callers gets here with pending at zero
+            pending = -1;
+            List<Timing> sorted = new ArrayList<>(timings);
+            Collections.sort(sorted, (t1, t2) -> Long.compare(t1.startMs, t2.startMs));
+            report = new Report(firstFrameMs, clockMs.getAsLong() - startMs, sorted);
+        }
+        listener.onComplete(report);
+    }
+
+    private static class Task {
+        final String name;
+        final Kind kind;
+        final Runnable work;
+
+        Task(String name, Kind kind, Runnable work) {
+            this.name = name;
+            this.kind = kind;
+            this.work = work;
+        }
+    }
+
+    // One task's run; times are in ms from start()
+    public static class Timing {
+        public final String name;
+        public final Kind kind;
+        public final String thread;
+        public final long startMs;
+        public final long durationMs;
+        public final String error;
+
+        Timing(String name, Kind kind, String thread, long startMs, long durationMs, String error) {
+            this.name = name;
+            this.kind = kind;
+            this.thread = thread;
+            this.startMs = startMs;
+            this.durationMs = durationMs;
+            this.error = error;
+        }
+    }
+
+    public static class Report {
+        public final long firstFrameMs;
+        public final long totalMs;
+        public final List<Timing> timings;
+
+        Report(long firstFrameMs, long totalMs, List<Timing> timings) {
+            this.firstFrameMs = firstFrameMs;
+            this.totalMs = totalMs;
+            this.timings = timings;
+        }
+
+        // Time spent on the main thread before the first frame
+        public long criticalMs() {
+            long total = 0;
+            for (Timing timing : timings) {
+                if (timing.kind == Kind.CRITICAL) total += timing.durationMs;
+            }
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder(String.format(Locale.US,
+                    "firstFrame=%dms total=%dms critical=%dms", firstFrameMs, totalMs, criticalMs()));
+            for (Timing timing : timings) {
+                out.append(String.format(Locale.US, "\n  %-24s %-17s +%4dms %4dms %s",
+                        timing.name, timing.kind, timing.startMs, timing.durationMs, timing.thread));
+                if (timing.error != null) out.append(" FAILED ").append(timing.error);
+            }
+            return out.toString();
+        }
+    }
+
+    public interface Listener {
+        // Called on the thread running the task, around it, e.g. for trace sections
+        void onTaskStarted(String name);
+        void onTaskFinished(String name);
+        void onComplete(Report report);
+    }
+}
@@ -1,192 +1,461 @@
 package com.robiul.chatapp.service;
 
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.*;
+import com.robiul.chatapp.data.CacheMetrics;
+import com.robiul.chatapp.data.ChatMessageCodec;
+import com.robiul.chatapp.data.ListenerMetrics;
+import com.robiul.chatapp.data.MapFields;
+import com.robiul.chatapp.data.MessageSource;
+import com.robiul.chatapp.data.MessageStore;
+import com.robiul.chatapp.data.MessageSync;
+import com.robiul.chatapp.data.OutboxStore;
+import com.robiul.chatapp.data.Scheduler;
+import com.robiul.chatapp.data.SharedMessageFeeds;
+import com.robiul.chatapp.data.SqliteMessageStore;
+import com.robiul.chatapp.data.UserCache;
 import com.robiul.chatapp.models.ChatMessage;
-import com.robiul.chatapp.models.User;
+import com.robiul.chatapp.models.ChatRoom;
+import com.robiul.chatapp.models.MessageDelta;
 
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ChatManager {
     private static final String TAG = "ChatManager";
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int DEFAULT_INBOX_PAGE_SIZE = 20;
+    // Single disk thread shared by every ChatManager so store writes stay ordered
+    private static final Executor IO_EXECUTOR = Executors.newSingleThreadExecutor();
+    // Snapshot decoding; serial so successive snapshots are applied in the order they came
+    private static final Executor DECODE_EXECUTOR = Executors.newSingleThreadExecutor();
+    // How long a chat's listener stays up after its last screen stops, to catch a quick reopen
+    public static final long LISTENER_LINGER_MS = 10_000;
+
+    private static ChatManager instance;
+
     private FirebaseFirestore db;
+    private final MessageSync messageSync;
+    private final SharedMessageFeeds messageFeeds;
+    private final MessageBatchWriter batchWriter;
+    private final OutboxStore outbox;
+    private ReadReceipts readReceipts;
+    private final Context appContext;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Executor listenerExecutor;
     private String currentUserId;
 
-    public ChatManager() {
+    // Process-wide, so a chat's live listener outlives the screen that opened it.
+    // Rebinds to whoever is signed in at the time of the call.
+    public static synchronized ChatManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new ChatManager(context, DECODE_EXECUTOR);
+        } else {
+            instance.bindCurrentUser();
+        }
+        return instance;
+    }
+
+    // listenerExecutor receives snapshot callbacks; only finished results reach the main thread
+    private ChatManager(Context context, Executor listenerExecutor) {
+        appContext = context.getApplicationContext();
         db = FirebaseFirestore.getInstance();
+        this.listenerExecutor = listenerExecutor;
+        messageSync = new MessageSync(SqliteMessageStore.getInstance(appContext),
+                new FirestoreMessageSource(db, listenerExecutor, mainHandler::post), IO_EXECUTOR, mainHandler::post);
+        messageFeeds = new SharedMessageFeeds(messageSync, new Scheduler() {
+            @Override
+            public void postDelayed(Runnable task, long delayMs) {
+                mainHandler.postDelayed(task, delayMs);
+            }
+
+            @Override
+            public void cancel(Runnable task) {
+                mainHandler.removeCallbacks(task);
+            }
+        }, LISTENER_LINGER_MS);
+        outbox = OutboxStore.getInstance(appContext);
+        batchWriter = new MessageBatchWriter(db);
+        batchWriter.setCommitListener(new MessageBatchWriter.CommitListener() {
+            @Override
+            public void onCommitted(List<ChatMessage> messages) {
+                IO_EXECUTOR.execute(() -> outbox.remove(messages));
+            }
+
+            @Override
+            public void onFailed(List<ChatMessage> messages, Exception e) {
+                // Still in the outbox; let the background worker retry with backoff
+                OutboxWorker.schedule(appContext);
+            }
+        });
+
+        // Messages left over from a previous process get retried in the background
+        IO_EXECUTOR.execute(() -> {
+            if (!outbox.isEmpty()) {
+                OutboxWorker.schedule(appContext);
+            }
+        });
+
+        bindCurrentUser();
+    }
+
+    private void bindCurrentUser() {
         FirebaseAuth auth = FirebaseAuth.getInstance();
-        if (auth.getCurrentUser() != null) {
-            currentUserId = auth.getCurrentUser().getUid();
+        String userId = auth.getCurrentUser() != null ? auth.getCurrentUser().getUid() : null;
+        if (Objects.equals(userId, currentUserId)) return;
+
+        // Nothing the previous user was watching carries over
+        messageFeeds.closeAll();
+        flushReadReceipts();
+        currentUserId = userId;
+        readReceipts = null;
+        if (userId != null) {
+            readReceipts = new ReadReceipts(db, currentUserId);
+            String name = auth.getCurrentUser().getDisplayName();
+            batchWriter.setParticipantName(currentUserId, name != null && !name.isEmpty()
+                    ? name : auth.getCurrentUser().getEmail());
             Log.d(TAG, "Current user: " + currentUserId);
         } else {
             Log.e(TAG, "No user logged in");
         }
     }
 
-    public void sendMessage(String receiverId, String message) {
+    // Returns the message in its pending state so the caller can show it right away
+    public ChatMessage sendMessage(String receiverId, String message) {
         if (currentUserId == null) {
             Log.e(TAG, "Cannot send message: User not logged in");
-            return;
+            return null;
         }
 
-        String chatId = generateChatId(currentUserId, receiverId);
-        String messageId = db.collection("messages").document().getId();
-
-        // Create message data
-        Map<String, Object> messageData = new HashMap<>();
-        messageData.put("messageId", messageId);
-        messageData.put("senderId", currentUserId);
-        messageData.put("receiverId", receiverId);
-        messageData.put("message", message);
-        messageData.put("timestamp", System.currentTimeMillis());
-        messageData.put("messageType", "text");
-        messageData.put("isSeen", false);
-        messageData.put("chatId", chatId);
-
-        // Save message to Firestore
-        db.collection("messages").document(messageId)
-                .set(messageData)
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "Message sent successfully");
-                    updateChatRoom(chatId, currentUserId, receiverId, message);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Failed to send message: " + e.getMessage());
-                });
+        ChatMessage chatMessage = new ChatMessage(currentUserId, receiverId, message);
+        chatMessage.setMessageId(db.collection("messages").document().getId());
+        chatMessage.setChatId(generateChatId(currentUserId, receiverId));
+        chatMessage.setPending(true);
+
+        // Persist before sending so the message survives process death
+        IO_EXECUTOR.execute(() -> outbox.enqueue(chatMessage));
+
+        // Message and chat room summary are committed together
+        batchWriter.write(chatMessage);
+        return chatMessage;
     }
 
-    private void updateChatRoom(String chatId, String senderId, String receiverId, String lastMessage) {
-        Map<String, Object> chatData = new HashMap<>();
-        chatData.put("chatId", chatId);
-        chatData.put("participants", Arrays.asList(senderId, receiverId));
-        chatData.put("lastMessage", lastMessage);
-        chatData.put("lastMessageTime", System.currentTimeMillis());
-        chatData.put("lastMessageSender", senderId);
+    // Groups messages sent in quick succession into one batch commit
+    public void setSendCoalescing(boolean enabled) {
+        batchWriter.setCoalesceWindowMs(enabled ? MessageBatchWriter.DEFAULT_COALESCE_WINDOW_MS : 0);
+    }
+
+    public void flushPendingSends() {
+        batchWriter.flush();
+    }
 
-        db.collection("chats").document(chatId)
-                .set(chatData, SetOptions.merge())
-                .addOnSuccessListener(aVoid -> Log.d(TAG, "Chat room updated"))
-                .addOnFailureListener(e -> Log.e(TAG, "Failed to update chat room: " + e.getMessage()));
+    // Name stored on the chat summary so the inbox can label it without a user lookup
+    public void setChatPartnerName(String otherUserId, String name) {
+        batchWriter.setParticipantName(otherUserId, name);
     }
 
-    public void getMessages(String otherUserId, MessagesCallback callback) {
+    // Live inbox: the newest conversations the current user takes part in
+    public ListenerRegistration listenToConversations(int limit, ConversationsCallback callback) {
         if (currentUserId == null) {
             callback.onError("User not logged in");
-            return;
+            return null;
         }
 
-        String chatId = generateChatId(currentUserId, otherUserId);
-        Log.d(TAG, "Getting messages for chat: " + chatId);
-
-        // Query without ordering first (no index needed)
-        db.collection("messages")
-                .whereEqualTo("chatId", chatId)
-                .addSnapshotListener((value, error) -> {
+        AtomicBoolean removed = new AtomicBoolean(false);
+        ListenerRegistration registration = conversationsQuery(limit)
+                .addSnapshotListener(listenerExecutor, (value, error) -> {
                     if (error != null) {
-                        Log.e(TAG, "Listen failed: " + error);
-                        callback.onError(error.getMessage());
+                        Log.e(TAG, "Inbox listen failed: " + error);
+                        mainHandler.post(() -> {
+                            if (!removed.get()) callback.onError(error.getMessage());
+                        });
                         return;
                     }
+                    if (value == null) return;
 
-                    List<ChatMessage> messages = new ArrayList<>();
-                    if (value != null) {
-                        for (QueryDocumentSnapshot doc : value) {
-                            Map<String, Object> data = doc.getData();
-                            ChatMessage message = mapToChatMessage(data);
-                            messages.add(message);
+                    boolean windowFull = value.size() >= limit;
+                    long windowEnd = value.isEmpty() ? Long.MIN_VALUE
+                            : mapToChatRoom(value.getDocuments().get(value.size() - 1)).getLastMessageTime();
+
+                    List<ChatRoom> changed = new ArrayList<>();
+                    List<ChatRoom> removedRooms = new ArrayList<>();
+                    for (DocumentChange change : value.getDocumentChanges()) {
+                        ChatRoom room = mapToChatRoom(change.getDocument());
+                        if (change.getType() != DocumentChange.Type.REMOVED) {
+                            changed.add(room);
+                        } else if (!windowFull || room.getLastMessageTime() > windowEnd) {
+                            // Rooms pushed past the limit by newer activity stay listed
+                            removedRooms.add(room);
                         }
+                    }
+                    mainHandler.post(() -> {
+                        if (!removed.get()) callback.onConversationsChanged(changed, removedRooms);
+                    });
+                });
+        return () -> {
+            removed.set(true);
+            registration.remove();
+        };
+    }
+
+    // One page of conversations after the last one listed, paged on (lastMessageTime, chatId)
+    // so rooms sharing the boundary time aren't skipped
+    public void loadMoreConversations(ChatRoom after, int limit, ConversationsPageCallback callback) {
+        if (currentUserId == null) {
+            callback.onError("User not logged in");
+            return;
+        }
 
-                        // Sort messages by timestamp manually
-                        Collections.sort(messages, (m1, m2) ->
-                                Long.compare(m1.getTimestamp(), m2.getTimestamp()));
+        conversationsQuery(limit)
+                .startAfter(after.getLastMessageTime(), after.getChatId())
+                .get()
+                .addOnSuccessListener(listenerExecutor, snapshot -> {
+                    List<ChatRoom> rooms = new ArrayList<>();
+                    for (QueryDocumentSnapshot doc : snapshot) {
+                        rooms.add(mapToChatRoom(doc));
                     }
-                    callback.onMessagesReceived(messages);
+                    mainHandler.post(() -> callback.onConversationsLoaded(rooms, rooms.size() == limit));
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to load conversations: " + e.getMessage());
+                    callback.onError(e.getMessage());
                 });
     }
 
-    private ChatMessage mapToChatMessage(Map<String, Object> data) {
-        ChatMessage message = new ChatMessage();
+    private Query conversationsQuery(int limit) {
+        return conversationsQuery(db, currentUserId, limit);
+    }
 
-        // Set basic fields
-        message.setMessageId((String) data.get("messageId"));
-        message.setSenderId((String) data.get("senderId"));
-        message.setReceiverId((String) data.get("receiverId"));
-        message.setMessage((String) data.get("message"));
-        message.setChatId((String) data.get("chatId"));
-        message.setMessageType((String) data.get("messageType"));
+    // Served by the (participants, lastMessageTime, __name__) index in firestore.indexes.json
+    static Query conversationsQuery(FirebaseFirestore db, String userId, int limit) {
+        return db.collection("chats")
+                .whereArrayContains("participants", userId)
+                .orderBy("lastMessageTime", Query.Direction.DESCENDING)
+                .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING)
+                .limit(limit);
+    }
 
-        // Handle timestamp (could be Long or Double from Firestore)
-        Object timestamp = data.get("timestamp");
-        if (timestamp instanceof Long) {
-            message.setTimestamp((Long) timestamp);
-        } else if (timestamp instanceof Double) {
-            message.setTimestamp(((Double) timestamp).longValue());
-        } else {
-            message.setTimestamp(System.currentTimeMillis());
+    @SuppressWarnings("unchecked")
+    private ChatRoom mapToChatRoom(DocumentSnapshot doc) {
+        ChatRoom room = new ChatRoom();
+        room.setChatId(doc.getId());
+        room.setParticipants((List<String>) doc.get("participants"));
+        room.setParticipantNames((Map<String, String>) doc.get("participantNames"));
+        room.setLastMessage(doc.getString("lastMessage"));
+        room.setLastMessageSender(doc.getString("lastMessageSender"));
+        Long lastMessageTime = doc.getLong("lastMessageTime");
+        room.setLastMessageTime(lastMessageTime != null ? lastMessageTime : 0);
+        return room;
+    }
+
+    /**
+     * Observes the chat while owner is started; the shared listener is released when it stops.
+     * The returned cursor pages older messages for this owner and is kept across restarts,
+     * since the rows it has already shown stay on screen.
+     */
+    public PageCursor getMessages(LifecycleOwner owner, String otherUserId, MessagesCallback callback) {
+        PageCursor cursor = new PageCursor();
+        owner.getLifecycle().addObserver(new DefaultLifecycleObserver() {
+            private MessageSource.Registration registration;
+
+            @Override
+            public void onStart(@NonNull LifecycleOwner source) {
+                registration = getMessages(otherUserId, DEFAULT_PAGE_SIZE, cursor, callback);
+            }
+
+            @Override
+            public void onStop(@NonNull LifecycleOwner source) {
+                if (registration != null) {
+                    registration.remove();
+                    registration = null;
+                }
+            }
+        });
+        return cursor;
+    }
+
+    public MessageSource.Registration getMessages(String otherUserId, MessagesCallback callback) {
+        return getMessages(otherUserId, DEFAULT_PAGE_SIZE, new PageCursor(), callback);
+    }
+
+    // Serves the latest pageSize messages from disk, then listens for anything newer.
+    // The listener is shared with anyone else observing the same chat.
+    public MessageSource.Registration getMessages(String otherUserId, int pageSize, PageCursor cursor,
+                                                  MessagesCallback callback) {
+        if (currentUserId == null) {
+            callback.onError("User not logged in");
+            return null;
         }
 
-        // Handle isSeen field
-        Boolean isSeen = (Boolean) data.get("isSeen");
-        message.setSeen(isSeen != null ? isSeen : false);
+        String chatId = generateChatId(currentUserId, otherUserId);
+        Log.d(TAG, "Getting latest " + pageSize + " messages for chat: " + chatId);
+        cursor.chatId = chatId;
+
+        // Unsent messages from the outbox show up in their pending state
+        IO_EXECUTOR.execute(() -> {
+            List<ChatMessage> unsent = outbox.loadForChat(chatId);
+            if (!unsent.isEmpty()) {
+                mainHandler.post(() -> callback.onMessagesChanged(MessageDelta.ofAdded(unsent)));
+            }
+        });
+
+        MessageSource.Registration registration = messageFeeds.observe(chatId, pageSize, new MessageSource.Listener() {
+            @Override
+            public void onDelta(MessageDelta delta) {
+                if (!delta.getAdded().isEmpty()) {
+                    cursor.remember(delta.getAdded().get(0));
+                }
+                callback.onMessagesChanged(delta);
+            }
+
+            @Override
+            public void onError(String error) {
+                callback.onError(error);
+            }
+        });
+        Log.d(TAG, "Message listeners: " + messageFeeds.getMetrics());
+        return registration;
+    }
+
+    public ListenerMetrics getListenerMetrics() {
+        return messageFeeds.getMetrics();
+    }
 
-        return message;
+    public void loadOlderMessages(PageCursor cursor, OlderMessagesCallback callback) {
+        loadOlderMessages(cursor, DEFAULT_PAGE_SIZE, callback);
     }
 
-    public void getAllUsers(UsersCallback callback) {
+    // Fetches one page of messages older than anything this cursor's observer was shown
+    public void loadOlderMessages(PageCursor cursor, int pageSize, OlderMessagesCallback callback) {
         if (currentUserId == null) {
             callback.onError("User not logged in");
             return;
         }
 
-        Log.d(TAG, "Fetching all users except: " + currentUserId);
+        String chatId = cursor.chatId;
+        ChatMessage before = cursor.oldest;
+        if (before == null) {
+            callback.onOlderMessagesLoaded(new ArrayList<>(), false);
+            return;
+        }
 
-        db.collection("users")
-                .whereNotEqualTo("userId", currentUserId)
-                .get()
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful()) {
-                        List<User> users = new ArrayList<>();
-                        for (QueryDocumentSnapshot document : task.getResult()) {
-                            Map<String, Object> data = document.getData();
-                            User user = new User();
-                            user.setUserId((String) data.get("userId"));
-                            user.setEmail((String) data.get("email"));
-                            user.setName((String) data.get("name"));
-                            user.setFcmToken((String) data.get("fcmToken"));
-                            users.add(user);
-                            Log.d(TAG, "Found user: " + user.getName());
-                        }
-                        callback.onUsersReceived(users);
-                    } else {
-                        Log.e(TAG, "Error getting users: ", task.getException());
-                        callback.onError(task.getException().getMessage());
-                    }
-                });
+        messageSync.loadOlder(chatId, before.getTimestamp(), before.getMessageId(), pageSize, new MessageSource.FetchCallback() {
+            @Override
+            public void onFetched(List<ChatMessage> messages) {
+                if (!messages.isEmpty()) {
+                    cursor.remember(messages.get(0));
+                }
+                Log.d(TAG, "Loaded " + messages.size() + " older messages for chat: " + chatId);
+                callback.onOlderMessagesLoaded(messages, messages.size() == pageSize);
+            }
+
+            @Override
+            public void onError(String error) {
+                callback.onError(error);
+            }
+        });
+    }
+
+
+    // Paged, searchable replacement for a full scan of the users collection
+    public UserDirectory newUserDirectory(int pageSize) {
+        return new UserDirectory(db, currentUserId, pageSize, UserCache.getInstance(appContext), IO_EXECUTOR);
+    }
+
+    public CacheMetrics getUserCacheMetrics() {
+        return UserCache.getInstance(appContext).getMetrics();
     }
 
-    public void markMessageAsSeen(String messageId) {
+    // Records that everything up to timestamp in this chat has been read; coalesced into one write
+    public void markChatSeen(String otherUserId, long timestamp) {
         if (currentUserId == null) return;
+        readReceipts.markSeenUpTo(generateChatId(currentUserId, otherUserId), timestamp);
+    }
+
+    public void flushReadReceipts() {
+        if (readReceipts != null) readReceipts.flush();
+    }
+
+    // Follows how far the other user has read our messages
+    public ListenerRegistration listenToSeenWatermark(String otherUserId, ReadReceipts.WatermarkCallback callback) {
+        if (currentUserId == null) return null;
+        return readReceipts.listenToWatermark(generateChatId(currentUserId, otherUserId), otherUserId, callback);
+    }
 
-        db.collection("messages").document(messageId)
-                .update("isSeen", true)
-                .addOnSuccessListener(aVoid -> Log.d(TAG, "Message marked as seen"))
-                .addOnFailureListener(e -> Log.e(TAG, "Failed to mark message as seen: " + e.getMessage()));
+    // The chat message in an FCM data payload, or null if it doesn't carry one.
+    // Pushes are addressed to whoever is signed in here.
+    public ChatMessage readPushedMessage(Map<String, String> data) {
+        ChatMessage message = ChatMessageCodec.decode(new MapFields(data));
+        if (message.getReceiverId() == null) message.setReceiverId(currentUserId);
+        if (message.getChatId() == null && message.getSenderId() != null && message.getReceiverId() != null) {
+            message.setChatId(generateChatId(message.getSenderId(), message.getReceiverId()));
+        }
+        return message.getChatId() != null && message.getMessage() != null ? message : null;
+    }
+
+    // Puts a pushed message on disk so opening its chat shows it straight away,
+    // then prefetches the page before it in the background
+    public void storePushedMessage(ChatMessage message) {
+        if (currentUserId == null || !currentUserId.equals(message.getReceiverId())) return;
+        if (message.getMessageId() == null) {
+            // Without the server id it would show twice once the real document syncs
+            Log.d(TAG, "Pushed message has no id, not storing it");
+            return;
+        }
+        messageSync.writeThrough(message, DEFAULT_PAGE_SIZE);
     }
 
-    private String generateChatId(String user1, String user2) {
+    // Id of the chat between the signed-in user and otherUserId, or null when signed out
+    public String getChatId(String otherUserId) {
+        return currentUserId != null ? generateChatId(currentUserId, otherUserId) : null;
+    }
+
+    static String generateChatId(String user1, String user2) {
         // Generate consistent chat ID regardless of user order
         return user1.compareTo(user2) < 0 ? user1 + "_" + user2 : user2 + "_" + user1;
     }
 
+    // Paging position of one observer of a chat: the oldest message it has been shown
+    public static class PageCursor {
+        private String chatId;
+        private ChatMessage oldest;
+
+        private void remember(ChatMessage message) {
+            if (oldest == null || MessageStore.ORDER.compare(message, oldest) < 0) {
+                oldest = message;
+            }
+        }
+    }
+
     // Callback interfaces
     public interface MessagesCallback {
-        void onMessagesReceived(List<ChatMessage> messages);
+        void onMessagesChanged(MessageDelta delta);
+        void onError(String error);
+    }
+
+    public interface OlderMessagesCallback {
+        void onOlderMessagesLoaded(List<ChatMessage> messages, boolean hasMore);
+        void onError(String error);
+    }
+
+    public interface ConversationsCallback {
+        void onConversationsChanged(List<ChatRoom> changed, List<ChatRoom> removed);
         void onError(String error);
     }
 
-    public interface UsersCallback {
-        void onUsersReceived(List<User> users);
+    public interface ConversationsPageCallback {
+        void onConversationsLoaded(List<ChatRoom> rooms, boolean hasMore);
         void onError(String error);
     }
 }
\ No newline at end of file
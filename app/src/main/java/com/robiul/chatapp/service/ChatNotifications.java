@@ -0,0 +1,199 @@
+package com.robiul.chatapp.service;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.core.app.Person;
+
+import com.google.gson.Gson;
+import com.robiul.chatapp.MainActivity;
+import com.robiul.chatapp.NotificationActivity;
+import com.robiul.chatapp.R;
+import com.robiul.chatapp.data.Scheduler;
+import com.robiul.chatapp.models.ChatMessage;
+
+import java.util.Map;
+
+/**
+ * Posts push notifications: one MessagingStyle notification per conversation,
+ * tagged with its chatId and updated in place, plus a group summary once more
+ * than one conversation is waiting. Channels are created once per process.
+ */
+public class ChatNotifications implements ConversationNotifier.Poster {
+    private static final String TAG = "ChatNotifications";
+    private static final String CHAT_CHANNEL_ID = "chat_messages";
+    private static final String DEFAULT_CHANNEL_ID = "FCMService";
+    private static final String GROUP_CHATS = "chats";
+    private static final String SUMMARY_TAG = "chats_summary";
+    private static final String GENERIC_TAG = "generic";
+    private static final Gson GSON = new Gson();
+
+    private static ChatNotifications instance;
+
+    private final Context appContext;
+    private final NotificationManagerCompat manager;
+    private final ConversationNotifier notifier;
+    private final Person self;
+    private int nextGenericId = 0;
+
+    public static synchronized ChatNotifications getInstance(Context context) {
+        if (instance == null) {
+            instance = new ChatNotifications(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ChatNotifications(Context appContext) {
+        this.appContext = appContext;
+        this.manager = NotificationManagerCompat.from(appContext);
+        this.self = new Person.Builder().setName("You").build();
+        createChannels();
+
+        Handler handler = new Handler(Looper.getMainLooper());
+        notifier = new ConversationNotifier(new Scheduler() {
+            @Override
+            public void postDelayed(Runnable task, long delayMs) {
+                handler.postDelayed(task, delayMs);
+            }
+
+            @Override
+            public void cancel(Runnable task) {
+                handler.removeCallbacks(task);
+            }
+        }, ConversationNotifier.DEFAULT_COALESCE_MS, this);
+    }
+
+    private void createChannels() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) return;
+        NotificationManager system = appContext.getSystemService(NotificationManager.class);
+
+        NotificationChannel chats = new NotificationChannel(CHAT_CHANNEL_ID, "Chat messages",
+                NotificationManager.IMPORTANCE_HIGH);
+        chats.setDescription("New messages from your conversations");
+        system.createNotificationChannel(chats);
+
+        NotificationChannel other = new NotificationChannel(DEFAULT_CHANNEL_ID, "Default Channel",
+                NotificationManager.IMPORTANCE_DEFAULT);
+        other.setDescription("Default notifications");
+        system.createNotificationChannel(other);
+    }
+
+    // A chat message from a push; duplicates of an already notified message are dropped
+    public void onChatPush(ChatMessage message, String senderName) {
+        if (message.getMessageId() == null) {
+            // Older senders don't include the id; chat, time and text identify a redelivery just as well
+            message.setMessageId(message.getChatId() + ":" + message.getTimestamp() + ":" + message.getMessage().hashCode());
+        }
+        if (!notifier.onMessage(message, senderName)) {
+            Log.d(TAG, "Duplicate push " + message.getMessageId());
+        }
+    }
+
+    // The chat is on screen now, or its notification was dismissed
+    public void clearChat(String chatId) {
+        if (chatId != null) notifier.clear(chatId);
+    }
+
+    // Pushes that aren't chat messages each get their own notification
+    public void showGeneric(String title, String body, Map<String, String> data) {
+        Intent intent = new Intent(appContext, NotificationActivity.class);
+        intent.putExtra("notification_data", GSON.toJson(data));
+        intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        int id;
+        synchronized (this) {
+            id = nextGenericId++;
+        }
+        PendingIntent pendingIntent = PendingIntent.getActivity(appContext, id, intent,
+                PendingIntent.FLAG_ONE_SHOT | PendingIntent.FLAG_IMMUTABLE);
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(appContext, DEFAULT_CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_notification)
+                .setContentTitle(title)
+                .setContentText(body)
+                .setAutoCancel(true)
+                .setContentIntent(pendingIntent);
+        notify(GENERIC_TAG, id, builder);
+    }
+
+    @Override
+    public void post(ConversationNotifier.Snapshot conversation) {
+        String title = conversation.title != null ? conversation.title : "New message";
+        Person sender = new Person.Builder().setName(title).setKey(conversation.senderId).build();
+        NotificationCompat.MessagingStyle style = new NotificationCompat.MessagingStyle(self);
+        for (ChatMessage message : conversation.messages) {
+            style.addMessage(message.getMessage(), message.getTimestamp(), sender);
+        }
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(appContext, CHAT_CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_notification)
+                .setStyle(style)
+                .setCategory(NotificationCompat.CATEGORY_MESSAGE)
+                .setGroup(GROUP_CHATS)
+                .setAutoCancel(true)
+                .setContentIntent(openChatIntent(conversation))
+                .setDeleteIntent(dismissedIntent(conversation.chatId));
+        notify(conversation.chatId, 0, builder);
+    }
+
+    @Override
+    public void postSummary(int conversations) {
+        if (conversations < 2) {
+            manager.cancel(SUMMARY_TAG, 0);
+            return;
+        }
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(appContext, CHAT_CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_notification)
+                .setContentTitle(conversations + " conversations")
+                .setGroup(GROUP_CHATS)
+                .setGroupSummary(true)
+                .setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_CHILDREN)
+                .setAutoCancel(true);
+        notify(SUMMARY_TAG, 0, builder);
+    }
+
+    @Override
+    public void cancel(String chatId) {
+        manager.cancel(chatId, 0);
+    }
+
+    // Same deep link MainActivity already handles for chat pushes
+    private PendingIntent openChatIntent(ConversationNotifier.Snapshot conversation) {
+        Intent intent = new Intent(appContext, MainActivity.class);
+        intent.putExtra("type", "chat");
+        intent.putExtra("senderId", conversation.senderId);
+        intent.putExtra("senderName", conversation.title);
+        intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        return PendingIntent.getActivity(appContext, conversation.chatId.hashCode(), intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    // Drops the conversation's history when the user swipes its notification away
+    private PendingIntent dismissedIntent(String chatId) {
+        Intent intent = new Intent(appContext, NotificationDismissedReceiver.class);
+        intent.putExtra(NotificationDismissedReceiver.EXTRA_CHAT_ID, chatId);
+        return PendingIntent.getBroadcast(appContext, chatId.hashCode(), intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    private void notify(String tag, int id, NotificationCompat.Builder builder) {
+        try {
+            manager.notify(tag, id, builder.build());
+        } catch (SecurityException e) {
+            // POST_NOTIFICATIONS not granted
+            Log.w(TAG, "Cannot post notification: " + e.getMessage());
+        }
+    }
+
+    public String getStats() {
+        return notifier.getStats();
+    }
+}
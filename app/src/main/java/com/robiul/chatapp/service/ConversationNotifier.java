@@ -0,0 +1,167 @@
+package com.robiul.chatapp.service;
+
+import com.robiul.chatapp.data.Scheduler;
+import com.robiul.chatapp.models.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides what chat notifications to show. Pushes are kept per conversation and
+ * deduplicated by message id; a burst of pushes is coalesced so each affected
+ * conversation is posted once per window with its recent messages. Posting is
+ * left to the Poster. Pushes may arrive on any thread; the Poster is called on
+ * the scheduler's thread.
+ */
+public class ConversationNotifier {
+    public static final long DEFAULT_COALESCE_MS = 300;
+    // Recent messages shown per conversation
+    static final int MAX_MESSAGES = 8;
+    // Message ids remembered for dedup; FCM redelivery happens within minutes, not thousands of pushes
+    private static final int SEEN_IDS_CAPACITY = 2000;
+
+    private final Scheduler scheduler;
+    private final long coalesceMs;
+    private final Poster poster;
+    private final Map<String, Conversation> conversations = new HashMap<>();
+    // Conversations changed since the last post, in arrival order
+    private final Set<String> dirty = new LinkedHashSet<>();
+    private final Runnable flushTask = this::flush;
+    private final Map<String, Boolean> seenIds = new LinkedHashMap<String, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > SEEN_IDS_CAPACITY;
+        }
+    };
+    private boolean flushScheduled = false;
+    private long pushes = 0;
+    private long duplicates = 0;
+    private long posts = 0;
+
+    public ConversationNotifier(Scheduler scheduler, long coalesceMs, Poster poster) {
+        this.scheduler = scheduler;
+        this.coalesceMs = coalesceMs;
+        this.poster = poster;
+    }
+
+    // Returns false for a message already notified
+    public synchronized boolean onMessage(ChatMessage message, String senderName) {
+        pushes++;
+        if (seenIds.put(message.getMessageId(), Boolean.TRUE) != null) {
+            duplicates++;
+            return false;
+        }
+
+        Conversation conversation = conversations.get(message.getChatId());
+        if (conversation == null) {
+            conversation = new Conversation(message.getChatId());
+            conversations.put(message.getChatId(), conversation);
+        }
+        conversation.add(message, senderName);
+        dirty.add(message.getChatId());
+
+        if (!flushScheduled) {
+            flushScheduled = true;
+            scheduler.postDelayed(flushTask, coalesceMs);
+        }
+        return true;
+    }
+
+    // The user is looking at the chat or dismissed it; its notification and history go away
+    public void clear(String chatId) {
+        int active;
+        synchronized (this) {
+            dirty.remove(chatId);
+            if (conversations.remove(chatId) == null) return;
+            active = conversations.size();
+        }
+        poster.cancel(chatId);
+        poster.postSummary(active);
+    }
+
+    private void flush() {
+        List<Snapshot> changed = new ArrayList<>();
+        int active;
+        synchronized (this) {
+            flushScheduled = false;
+            for (String chatId : dirty) {
+                changed.add(conversations.get(chatId).snapshot());
+            }
+            dirty.clear();
+            active = conversations.size();
+            posts += changed.size();
+        }
+
+        for (Snapshot snapshot : changed) {
+            poster.post(snapshot);
+        }
+        if (!changed.isEmpty()) {
+            poster.postSummary(active);
+        }
+    }
+
+    public synchronized String getStats() {
+        return "pushes=" + pushes + " duplicates=" + duplicates + " posts=" + posts;
+    }
+
+    public synchronized long getPosts() {
+        return posts;
+    }
+
+    public synchronized long getDuplicates() {
+        return duplicates;
+    }
+
+    private static class Conversation {
+        final String chatId;
+        final ArrayDeque<ChatMessage> messages = new ArrayDeque<>();
+        String title;
+        String senderId;
+
+        Conversation(String chatId) {
+            this.chatId = chatId;
+        }
+
+        void add(ChatMessage message, String senderName) {
+            messages.addLast(message);
+            if (messages.size() > MAX_MESSAGES) messages.removeFirst();
+            if (senderName != null) title = senderName;
+            senderId = message.getSenderId();
+        }
+
+        Snapshot snapshot() {
+            List<ChatMessage> sorted = new ArrayList<>(messages);
+            // Pushes can arrive out of order
+            sorted.sort((m1, m2) -> Long.compare(m1.getTimestamp(), m2.getTimestamp()));
+            return new Snapshot(chatId, title, senderId, sorted);
+        }
+    }
+
+    // What one conversation's notification should show
+    public static class Snapshot {
+        public final String chatId;
+        public final String title;
+        public final String senderId;
+        public final List<ChatMessage> messages;
+
+        Snapshot(String chatId, String title, String senderId, List<ChatMessage> messages) {
+            this.chatId = chatId;
+            this.title = title;
+            this.senderId = senderId;
+            this.messages = messages;
+        }
+    }
+
+    public interface Poster {
+        void post(Snapshot conversation);
+        // Called after changes with the number of conversations still notified
+        void postSummary(int conversations);
+        void cancel(String chatId);
+    }
+}
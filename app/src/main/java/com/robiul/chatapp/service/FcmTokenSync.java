@@ -0,0 +1,138 @@
+package com.robiul.chatapp.service;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.SetOptions;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The one place this device's FCM token is written to users/{uid}. Whoever gets
+ * a token (launch, manual refresh, onNewToken) hands it here; TokenSync drops the
+ * writes that wouldn't change anything.
+ */
+public class FcmTokenSync {
+    private static final String TAG = "FcmTokenSync";
+    private static final String PREFS = "fcm_prefs";
+    private static final String KEY_PENDING_TOKEN = "pending_token";
+    private static final String KEY_SYNCED_HASH = "synced_token_hash";
+
+    private static FcmTokenSync instance;
+
+    private final FirebaseFirestore db;
+    private final FirebaseAuth auth;
+    private final TokenSync tokenSync;
+
+    public static synchronized FcmTokenSync getInstance(Context context) {
+        if (instance == null) {
+            instance = new FcmTokenSync(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private FcmTokenSync(Context appContext) {
+        db = FirebaseFirestore.getInstance();
+        auth = FirebaseAuth.getInstance();
+        SharedPreferences prefs = appContext.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        tokenSync = new TokenSync(new TokenSync.Store() {
+            @Override
+            public String getSyncedHash() {
+                return prefs.getString(KEY_SYNCED_HASH, null);
+            }
+
+            @Override
+            public void setSyncedHash(String hash) {
+                prefs.edit().putString(KEY_SYNCED_HASH, hash).apply();
+            }
+
+            @Override
+            public String getPendingToken() {
+                return prefs.getString(KEY_PENDING_TOKEN, null);
+            }
+
+            @Override
+            public void setPendingToken(String token) {
+                prefs.edit().putString(KEY_PENDING_TOKEN, token).apply();
+            }
+        }, this::writeToken);
+    }
+
+    // Any thread; kept pending until someone is signed in
+    public void onToken(String token) {
+        tokenSync.sync(currentUserId(), token);
+    }
+
+    // A token that arrived while signed out, or whose write failed last time
+    public void syncPending() {
+        String userId = currentUserId();
+        if (userId != null) tokenSync.syncPending(userId);
+    }
+
+    // Call before FirebaseAuth.signOut(), while the user is still known
+    public void signOut() {
+        String userId = currentUserId();
+        tokenSync.reset();
+        if (userId == null) return;
+
+        db.collection("users").document(userId)
+                .update("fcmToken", "", "updatedAt", FieldValue.serverTimestamp())
+                .addOnSuccessListener(aVoid -> Log.d(TAG, "FCM token cleared on logout"))
+                .addOnFailureListener(e -> Log.e(TAG, "Failed to clear FCM token on logout", e));
+    }
+
+    public String getStats() {
+        return tokenSync.getStats();
+    }
+
+    private String currentUserId() {
+        FirebaseUser user = auth.getCurrentUser();
+        return user != null ? user.getUid() : null;
+    }
+
+    private void writeToken(String userId, String token, TokenSync.Callback callback) {
+        db.collection("users").document(userId)
+                .update("fcmToken", token, "updatedAt", FieldValue.serverTimestamp())
+                .addOnSuccessListener(aVoid -> {
+                    Log.d(TAG, "FCM token saved to Firestore (" + tokenSync.getStats() + ")");
+                    callback.onWritten();
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to save FCM token to Firestore", e);
+                    // Try to create/update full user document
+                    createUserDocumentWithToken(userId, token, callback);
+                });
+    }
+
+    private void createUserDocumentWithToken(String userId, String token, TokenSync.Callback callback) {
+        FirebaseUser user = auth.getCurrentUser();
+        if (user == null || !user.getUid().equals(userId)) {
+            callback.onFailed("Signed out before the token was saved");
+            return;
+        }
+
+        Map<String, Object> userData = new HashMap<>();
+        userData.put("fcmToken", token);
+        userData.put("email", user.getEmail());
+        userData.put("name", user.getDisplayName() != null ? user.getDisplayName() : user.getEmail());
+        userData.put("userId", user.getUid());
+        userData.put("updatedAt", FieldValue.serverTimestamp());
+
+        db.collection("users").document(userId)
+                .set(userData, SetOptions.merge())
+                .addOnSuccessListener(aVoid -> {
+                    Log.d(TAG, "User document created/updated with FCM token");
+                    callback.onWritten();
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to create/update user document: " + e.getMessage());
+                    callback.onFailed(e.getMessage());
+                });
+    }
+}
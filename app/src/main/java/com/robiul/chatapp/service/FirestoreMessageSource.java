@@ -0,0 +1,167 @@
+package com.robiul.chatapp.service;
+
+import android.util.Log;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.robiul.chatapp.data.ChatMessageCodec;
+import com.robiul.chatapp.data.MessageSource;
+import com.robiul.chatapp.data.MessageStore;
+import com.robiul.chatapp.models.ChatMessage;
+import com.robiul.chatapp.models.MessageDelta;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Messages from Firestore. Snapshots are decoded and sorted on the decode executor
+ * and only the finished delta is handed to the delivery executor. The decode
+ * executor must run tasks in order, or snapshots could overtake each other.
+ */
+public class FirestoreMessageSource implements MessageSource {
+    private static final String TAG = "FirestoreMessageSource";
+    private final FirebaseFirestore db;
+    private final Executor decodeExecutor;
+    private final Executor deliveryExecutor;
+
+    public FirestoreMessageSource(FirebaseFirestore db, Executor decodeExecutor, Executor deliveryExecutor) {
+        this.db = db;
+        this.decodeExecutor = decodeExecutor;
+        this.deliveryExecutor = deliveryExecutor;
+    }
+
+    // Served by the (chatId, timestamp) and (chatId, syncedAt) indexes in firestore.indexes.json
+    @Override
+    public Registration listen(String chatId, long afterSyncedAt, int limit, Listener listener) {
+        Query query = db.collection("messages").whereEqualTo("chatId", chatId);
+        String windowField = afterSyncedAt > 0 ? ChatMessageCodec.SYNCED_AT : ChatMessageCodec.TIMESTAMP;
+        if (afterSyncedAt > 0) {
+            query = query.whereGreaterThan(ChatMessageCodec.SYNCED_AT, syncedAtValue(afterSyncedAt));
+        }
+
+        AtomicBoolean removed = new AtomicBoolean(false);
+        ListenerRegistration registration = query
+                .orderBy(windowField, Query.Direction.DESCENDING)
+                .limit(limit)
+                .addSnapshotListener(decodeExecutor, (value, error) -> {
+                    if (error != null) {
+                        Log.e(TAG, "Listen failed: " + error);
+                        deliveryExecutor.execute(() -> {
+                            if (!removed.get()) listener.onError(error.getMessage());
+                        });
+                        return;
+                    }
+
+                    if (value == null) return;
+
+                    // Only decode the documents that changed in this snapshot
+                    MessageDelta delta = new MessageDelta();
+                    boolean windowFull = value.size() >= limit;
+                    long windowStart = value.isEmpty() ? Long.MIN_VALUE
+                            : windowKey(value.getDocuments().get(value.size() - 1), windowField);
+
+                    for (DocumentChange change : value.getDocumentChanges()) {
+                        ChatMessage message = decode(change.getDocument());
+                        switch (change.getType()) {
+                            case ADDED:
+                                delta.getAdded().add(message);
+                                break;
+                            case MODIFIED:
+                                delta.getModified().add(message);
+                                break;
+                            case REMOVED:
+                                // Messages sliding out of a full window are history, not deletions
+                                if (!windowFull || windowKey(change.getDocument(), windowField) > windowStart) {
+                                    delta.getRemoved().add(message);
+                                }
+                                break;
+                        }
+                    }
+
+                    Collections.sort(delta.getAdded(), MessageStore.ORDER);
+                    deliveryExecutor.execute(() -> {
+                        if (!removed.get()) listener.onDelta(delta);
+                    });
+                });
+        return () -> {
+            removed.set(true);
+            registration.remove();
+        };
+    }
+
+    @Override
+    public void fetchAfter(String chatId, long afterSyncedAt, int limit, FetchCallback callback) {
+        db.collection("messages")
+                .whereEqualTo("chatId", chatId)
+                .whereGreaterThan(ChatMessageCodec.SYNCED_AT, syncedAtValue(afterSyncedAt))
+                .orderBy(ChatMessageCodec.SYNCED_AT, Query.Direction.DESCENDING)
+                .limit(limit)
+                .get()
+                .addOnSuccessListener(decodeExecutor, snapshot -> {
+                    List<ChatMessage> messages = new ArrayList<>();
+                    for (QueryDocumentSnapshot doc : snapshot) {
+                        messages.add(decode(doc));
+                    }
+                    Collections.sort(messages, MessageStore.ORDER);
+                    Log.d(TAG, "Fetched " + messages.size() + " new messages for chat: " + chatId);
+                    deliveryExecutor.execute(() -> callback.onFetched(messages));
+                })
+                .addOnFailureListener(deliveryExecutor, e -> {
+                    Log.e(TAG, "Failed to load new messages: " + e.getMessage());
+                    callback.onError(e.getMessage());
+                });
+    }
+
+    // Document ids are message ids; the (chatId, timestamp) index already orders __name__ the same way
+    @Override
+    public void fetchBefore(String chatId, long beforeTimestamp, String beforeMessageId, int limit,
+                            FetchCallback callback) {
+        db.collection("messages")
+                .whereEqualTo("chatId", chatId)
+                .orderBy("timestamp", Query.Direction.DESCENDING)
+                .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING)
+                .startAfter(beforeTimestamp, beforeMessageId)
+                .limit(limit)
+                .get()
+                .addOnSuccessListener(decodeExecutor, snapshot -> {
+                    List<ChatMessage> messages = new ArrayList<>();
+                    for (QueryDocumentSnapshot doc : snapshot) {
+                        messages.add(decode(doc));
+                    }
+                    Collections.reverse(messages);
+                    Log.d(TAG, "Fetched " + messages.size() + " older messages for chat: " + chatId);
+                    deliveryExecutor.execute(() -> callback.onFetched(messages));
+                })
+                .addOnFailureListener(deliveryExecutor, e -> {
+                    Log.e(TAG, "Failed to load older messages: " + e.getMessage());
+                    callback.onError(e.getMessage());
+                });
+    }
+
+    // The document id is the message id; paging needs it even where the field was never written
+    private static ChatMessage decode(DocumentSnapshot document) {
+        ChatMessage message = ChatMessageCodec.decode(new SnapshotFields(document));
+        if (message.getMessageId() == null) message.setMessageId(document.getId());
+        return message;
+    }
+
+    // syncedAt is stored as a Firestore timestamp, so filters have to compare against one
+    private static Timestamp syncedAtValue(long millis) {
+        return new Timestamp(new Date(millis));
+    }
+
+    // Position of a document in the window's order; a pending server timestamp sorts newest
+    private static long windowKey(DocumentSnapshot document, String field) {
+        return new SnapshotFields(document).getLong(field, Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,127 @@
+package com.robiul.chatapp.service;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+import com.robiul.chatapp.data.ChatMessageCodec;
+import com.robiul.chatapp.models.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Commits messages and their chat summary in one WriteBatch, optionally coalescing quick sends
+public class MessageBatchWriter {
+    private static final String TAG = "MessageBatchWriter";
+    public static final long DEFAULT_COALESCE_WINDOW_MS = 150;
+    // Firestore allows 500 writes per batch; leave room for the chat summaries
+    public static final int MAX_MESSAGES_PER_BATCH = 200;
+
+    private final FirebaseFirestore db;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final List<ChatMessage> pending = new ArrayList<>();
+    private final Runnable flushRunnable = this::flush;
+    private long coalesceWindowMs = 0; // 0 commits every message right away
+    private CommitListener commitListener;
+    private final Map<String, String> participantNames = new HashMap<>();
+
+    public MessageBatchWriter(FirebaseFirestore db) {
+        this.db = db;
+    }
+
+    public void setCommitListener(CommitListener commitListener) {
+        this.commitListener = commitListener;
+    }
+
+    public void setParticipantName(String userId, String name) {
+        if (name != null) participantNames.put(userId, name);
+    }
+
+    public void setCoalesceWindowMs(long coalesceWindowMs) {
+        this.coalesceWindowMs = coalesceWindowMs;
+        if (coalesceWindowMs <= 0) flush();
+    }
+
+    public void write(ChatMessage message) {
+        pending.add(message);
+
+        if (coalesceWindowMs <= 0 || pending.size() >= MAX_MESSAGES_PER_BATCH) {
+            flush();
+        } else if (pending.size() == 1) {
+            handler.postDelayed(flushRunnable, coalesceWindowMs);
+        }
+    }
+
+    public void flush() {
+        handler.removeCallbacks(flushRunnable);
+        if (pending.isEmpty()) return;
+
+        List<ChatMessage> messages = new ArrayList<>(pending);
+        pending.clear();
+
+        commit(messages)
+                .addOnSuccessListener(aVoid -> {
+                    Log.d(TAG, "Committed " + messages.size() + " message(s)");
+                    if (commitListener != null) commitListener.onCommitted(messages);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to send messages: " + e.getMessage());
+                    if (commitListener != null) commitListener.onFailed(messages, e);
+                });
+    }
+
+    // Writes are keyed by messageId, so committing the same messages twice is harmless
+    public Task<Void> commit(List<ChatMessage> messages) {
+        WriteBatch batch = db.batch();
+        Map<String, ChatMessage> lastPerChat = new LinkedHashMap<>();
+        for (ChatMessage message : messages) {
+            batch.set(db.collection("messages").document(message.getMessageId()), toDocument(message));
+            lastPerChat.put(message.getChatId(), message);
+        }
+        // One summary write per chat, from its newest message in the batch
+        for (ChatMessage last : lastPerChat.values()) {
+            batch.set(db.collection("chats").document(last.getChatId()), toChatData(last), SetOptions.merge());
+        }
+        return batch.commit();
+    }
+
+    // The message fields plus syncedAt from the server clock, which readers sync on because
+    // timestamp comes from the sender's clock and can be older than messages already synced
+    public static Map<String, Object> toDocument(ChatMessage message) {
+        Map<String, Object> data = ChatMessageCodec.encode(message);
+        data.put(ChatMessageCodec.SYNCED_AT, FieldValue.serverTimestamp());
+        return data;
+    }
+
+    private Map<String, Object> toChatData(ChatMessage last) {
+        Map<String, Object> chatData = new HashMap<>();
+        chatData.put("chatId", last.getChatId());
+        chatData.put("participants", Arrays.asList(last.getSenderId(), last.getReceiverId()));
+        chatData.put("lastMessage", last.getMessage());
+        chatData.put("lastMessageTime", last.getTimestamp());
+        chatData.put("lastMessageSender", last.getSenderId());
+
+        // Merged into the existing map, so unknown names never erase known ones
+        Map<String, Object> names = new HashMap<>();
+        for (String userId : Arrays.asList(last.getSenderId(), last.getReceiverId())) {
+            String name = participantNames.get(userId);
+            if (name != null) names.put(userId, name);
+        }
+        if (!names.isEmpty()) chatData.put("participantNames", names);
+        return chatData;
+    }
+
+    public interface CommitListener {
+        void onCommitted(List<ChatMessage> messages);
+        void onFailed(List<ChatMessage> messages, Exception e);
+    }
+}
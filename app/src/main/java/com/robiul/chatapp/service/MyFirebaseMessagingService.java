@@ -1,109 +1,75 @@
 package com.robiul.chatapp.service;
 
-import android.app.NotificationChannel;
-import android.app.NotificationManager;
-import android.app.PendingIntent;
-import android.content.Context;
-import android.content.Intent;
-import android.media.RingtoneManager;
-import android.net.Uri;
-import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
-import androidx.core.app.NotificationCompat;
-
 import com.google.firebase.messaging.FirebaseMessagingService;
 import com.google.firebase.messaging.RemoteMessage;
-import com.google.gson.Gson;
-import com.robiul.chatapp.NotificationActivity;
-import com.robiul.chatapp.R;
+import com.robiul.chatapp.models.ChatMessage;
 
 import java.util.Map;
 
 public class MyFirebaseMessagingService extends FirebaseMessagingService {
     private static final String TAG = "FCMService";
-    private  static final String CHANNEL_ID = "FCMService";
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     @Override
     public void onNewToken(String token) {
         Log.d(TAG, "Refreshed token: " + token);
-        // Send token to your server if needed
-        sendRegistrationToServer(token);
+        // Written only if it changed; held until sign in otherwise
+        FcmTokenSync.getInstance(this).onToken(token);
     }
 
     @Override
     public void onMessageReceived(RemoteMessage remoteMessage) {
         Log.d(TAG, "From: " + remoteMessage.getFrom());
+        ChatNotifications notifications = ChatNotifications.getInstance(this);
+        Map<String, String> data = remoteMessage.getData();
+
+        // Chat messages are grouped per conversation, whatever else the push carries
+        if ("chat".equals(data.get("type"))) {
+            // ChatManager lives on the main thread; pushes are delivered on a worker
+            mainHandler.post(() -> handleChatMessage(notifications, data));
+            return;
+        }
 
         // Check if message contains a data payload
-        if (remoteMessage.getData().size() > 0) {
-            Log.d(TAG, "Message data payload: " + remoteMessage.getData());
-            handleDataMessage(remoteMessage.getData());
+        if (data.size() > 0) {
+            Log.d(TAG, "Message data payload: " + data);
+            handleDataMessage(notifications, data);
         }
 
         // Check if message contains a notification payload
         if (remoteMessage.getNotification() != null) {
             Log.d(TAG, "Message Notification Body: " + remoteMessage.getNotification().getBody());
-            sendNotification(
+            notifications.showGeneric(
                     remoteMessage.getNotification().getTitle(),
                     remoteMessage.getNotification().getBody(),
-                    remoteMessage.getData()
+                    data
             );
         }
     }
 
-    private void handleDataMessage(Map<String, String> data) {
-        String title = data.get("title");
-        String message = data.get("message");
-        String imageUrl = data.get("image");
-
-        if (title != null && message != null) {
-            sendNotification(title, message, data);
+    private void handleChatMessage(ChatNotifications notifications, Map<String, String> data) {
+        ChatManager chatManager = ChatManager.getInstance(this);
+        ChatMessage message = chatManager.readPushedMessage(data);
+        if (message == null) {
+            Log.w(TAG, "Chat push without chat or text, ignoring");
+            return;
         }
+        // Written before the notification goes up, so a tap opens straight onto it
+        chatManager.storePushedMessage(message);
+        notifications.onChatPush(message, data.get("senderName"));
     }
 
-    private void sendNotification(String title, String messageBody, Map<String, String> data) {
-        Intent intent = new Intent(this, NotificationActivity.class);
-        intent.putExtra("notification_data", new Gson().toJson(data));
-        intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
-
-        PendingIntent pendingIntent = PendingIntent.getActivity(
-                this,
-                0,
-                intent,
-                PendingIntent.FLAG_ONE_SHOT | PendingIntent.FLAG_IMMUTABLE
-        );
-
-        Uri defaultSoundUri = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_NOTIFICATION);
-
-        NotificationCompat.Builder notificationBuilder =
-                new NotificationCompat.Builder(this, CHANNEL_ID)
-                        .setSmallIcon(R.drawable.ic_notification)
-                        .setContentTitle(title)
-                        .setContentText(messageBody)
-                        .setAutoCancel(true)
-                        .setSound(defaultSoundUri)
-                        .setContentIntent(pendingIntent);
-
-        NotificationManager notificationManager =
-                (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+    private void handleDataMessage(ChatNotifications notifications, Map<String, String> data) {
+        String title = data.get("title");
+        String message = data.get("message");
 
-        // Create notification channel for Android O and above
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            NotificationChannel channel = new NotificationChannel(
-                    CHANNEL_ID,
-                    "Default Channel",
-                    NotificationManager.IMPORTANCE_DEFAULT
-            );
-            channel.setDescription("Default notifications");
-            notificationManager.createNotificationChannel(channel);
+        if (title != null && message != null) {
+            notifications.showGeneric(title, message, data);
         }
-
-        notificationManager.notify(0, notificationBuilder.build());
-    }
-
-    private void sendRegistrationToServer(String token) {
-        // Implement this method to send token to your app server
-        Log.d(TAG, "Send token to server: " + token);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,15 @@
+package com.robiul.chatapp.service;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+// A conversation notification was swiped away; the next push starts its history afresh
+public class NotificationDismissedReceiver extends BroadcastReceiver {
+    static final String EXTRA_CHAT_ID = "chatId";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        ChatNotifications.getInstance(context).clearChat(intent.getStringExtra(EXTRA_CHAT_ID));
+    }
+}
@@ -0,0 +1,73 @@
+package com.robiul.chatapp.service;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.robiul.chatapp.data.OutboxStore;
+import com.robiul.chatapp.models.ChatMessage;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Flushes the outbox in the background, retrying with exponential backoff until the server accepts it
+public class OutboxWorker extends Worker {
+    private static final String TAG = "OutboxWorker";
+    private static final String WORK_NAME = "outbox-flush";
+    private static final long INITIAL_BACKOFF_SECONDS = 10;
+
+    public OutboxWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    public static void schedule(Context context) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(OutboxWorker.class)
+                .setConstraints(new Constraints.Builder()
+                        .setRequiredNetworkType(NetworkType.CONNECTED)
+                        .build())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, INITIAL_BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+
+        // One flush at a time; a running flush picks up whatever was queued after it started
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        OutboxStore outbox = OutboxStore.getInstance(getApplicationContext());
+        MessageBatchWriter writer = new MessageBatchWriter(FirebaseFirestore.getInstance());
+        int flushed = 0;
+        try {
+            // Reload until empty, since schedule() doesn't queue another run while this one is going
+            for (List<ChatMessage> queued = outbox.loadAll(); !queued.isEmpty(); queued = outbox.loadAll()) {
+                for (int start = 0; start < queued.size(); start += MessageBatchWriter.MAX_MESSAGES_PER_BATCH) {
+                    List<ChatMessage> chunk = queued.subList(start,
+                            Math.min(queued.size(), start + MessageBatchWriter.MAX_MESSAGES_PER_BATCH));
+                    Tasks.await(writer.commit(chunk), 30, TimeUnit.SECONDS);
+                    outbox.remove(chunk);
+                    flushed += chunk.size();
+                }
+            }
+            if (flushed > 0) {
+                Log.d(TAG, "Flushed " + flushed + " queued message(s)");
+            }
+            return Result.success();
+        } catch (Exception e) {
+            Log.w(TAG, "Outbox flush failed, attempt " + getRunAttemptCount() + ": " + e.getMessage());
+            return Result.retry();
+        }
+    }
+}
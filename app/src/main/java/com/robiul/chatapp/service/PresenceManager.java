@@ -0,0 +1,208 @@
+package com.robiul.chatapp.service;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Online state kept at status/{uid} in the Realtime Database, away from the users
+ * documents so presence never invalidates profile listeners. The server marks a
+ * user offline through onDisconnect when the connection drops. Main thread only.
+ */
+public class PresenceManager {
+    private static final String TAG = "PresenceManager";
+    // One screen pauses before the next resumes; don't report that gap as offline
+    public static final long OFFLINE_DEBOUNCE_MS = 5000;
+
+    private static PresenceManager instance;
+
+    private final DatabaseReference statusRoot;
+    private final DatabaseReference connectedRef;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable offlineRunnable = () -> setOnline(false);
+    private final Map<String, Watch> watches = new HashMap<>();
+    private ValueEventListener connectionListener;
+    private String userId;
+    private int resumedScreens = 0;
+    private boolean connected = false;
+    private boolean wantOnline = false;
+    private boolean reportedOnline = false;
+
+    public static synchronized PresenceManager getInstance() {
+        if (instance == null) {
+            instance = new PresenceManager(FirebaseDatabase.getInstance());
+        }
+        return instance;
+    }
+
+    private PresenceManager(FirebaseDatabase database) {
+        statusRoot = database.getReference("status");
+        connectedRef = database.getReference(".info/connected");
+    }
+
+    // Call from every screen's onResume
+    public void onScreenResumed() {
+        resumedScreens++;
+        handler.removeCallbacks(offlineRunnable);
+        setOnline(true);
+    }
+
+    // Call from every screen's onPause; offline is written only if nothing resumes in time
+    public void onScreenPaused() {
+        if (resumedScreens > 0) resumedScreens--;
+        if (resumedScreens == 0) {
+            handler.postDelayed(offlineRunnable, OFFLINE_DEBOUNCE_MS);
+        }
+    }
+
+    // Logout reports offline right away and stops following the connection
+    public void signOut() {
+        handler.removeCallbacks(offlineRunnable);
+        setOnline(false);
+        if (connectionListener != null) {
+            connectedRef.removeEventListener(connectionListener);
+            connectionListener = null;
+        }
+        userId = null;
+        connected = false;
+        reportedOnline = false;
+    }
+
+    private void setOnline(boolean online) {
+        wantOnline = online;
+        if (online) followConnection();
+        publish();
+    }
+
+    private void followConnection() {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) return;
+        if (connectionListener != null && user.getUid().equals(userId)) return;
+
+        if (connectionListener != null) {
+            connectedRef.removeEventListener(connectionListener);
+        }
+        userId = user.getUid();
+        connected = false;
+        reportedOnline = false;
+        connectionListener = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                connected = Boolean.TRUE.equals(snapshot.getValue(Boolean.class));
+                if (!connected) {
+                    // onDisconnect has already marked us offline on the server
+                    reportedOnline = false;
+                    return;
+                }
+                publish();
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Connection state listen failed: " + error.getMessage());
+            }
+        };
+        connectedRef.addValueEventListener(connectionListener);
+    }
+
+    // Writes only when the server copy differs from what we want it to say
+    private void publish() {
+        if (userId == null || !connected || wantOnline == reportedOnline) return;
+
+        DatabaseReference status = statusRoot.child(userId);
+        if (wantOnline) {
+            // Armed before going online so a drop right after still ends offline
+            status.onDisconnect().setValue(statusValue(false));
+            status.setValue(statusValue(true));
+        } else {
+            status.setValue(statusValue(false));
+            status.onDisconnect().cancel();
+        }
+        reportedOnline = wantOnline;
+        Log.d(TAG, "Presence: " + (wantOnline ? "online" : "offline"));
+    }
+
+    private Map<String, Object> statusValue(boolean online) {
+        Map<String, Object> value = new HashMap<>();
+        value.put("online", online);
+        value.put("lastSeen", ServerValue.TIMESTAMP);
+        return value;
+    }
+
+    // One database listener per watched user, shared by every subscriber of that user
+    public Subscription watch(String userId, PresenceListener listener) {
+        Watch watch = watches.get(userId);
+        if (watch == null) {
+            watch = new Watch(userId);
+            watches.put(userId, watch);
+            statusRoot.child(userId).addValueEventListener(watch);
+        }
+        watch.listeners.add(listener);
+        if (watch.known) {
+            listener.onPresenceChanged(userId, watch.online, watch.lastSeen);
+        }
+
+        Watch subscribed = watch;
+        return () -> {
+            if (!subscribed.listeners.remove(listener) || !subscribed.listeners.isEmpty()) return;
+            statusRoot.child(userId).removeEventListener(subscribed);
+            watches.remove(userId);
+        };
+    }
+
+    private static class Watch implements ValueEventListener {
+        final String userId;
+        final List<PresenceListener> listeners = new ArrayList<>();
+        boolean known = false;
+        boolean online = false;
+        long lastSeen = 0;
+
+        Watch(String userId) {
+            this.userId = userId;
+        }
+
+        @Override
+        public void onDataChange(@NonNull DataSnapshot snapshot) {
+            boolean nowOnline = Boolean.TRUE.equals(snapshot.child("online").getValue(Boolean.class));
+            Long seen = snapshot.child("lastSeen").getValue(Long.class);
+            // lastSeen alone moving is not worth a rebind
+            if (known && nowOnline == online) return;
+
+            known = true;
+            online = nowOnline;
+            lastSeen = seen != null ? seen : 0;
+            for (PresenceListener listener : new ArrayList<>(listeners)) {
+                listener.onPresenceChanged(userId, online, lastSeen);
+            }
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+            Log.e(TAG, "Presence listen failed for " + userId + ": " + error.getMessage());
+        }
+    }
+
+    public interface Subscription {
+        void remove();
+    }
+
+    public interface PresenceListener {
+        void onPresenceChanged(String userId, boolean online, long lastSeen);
+    }
+}
@@ -0,0 +1,39 @@
+package com.robiul.chatapp.service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+// Keeps presence subscriptions matched to the rows on screen, so off-screen users cost nothing
+public class PresenceSubscriptions {
+    private final PresenceManager presence;
+    private final PresenceManager.PresenceListener listener;
+    private final Map<String, PresenceManager.Subscription> active = new HashMap<>();
+
+    public PresenceSubscriptions(PresenceManager presence, PresenceManager.PresenceListener listener) {
+        this.presence = presence;
+        this.listener = listener;
+    }
+
+    public void setVisible(Collection<String> userIds) {
+        Iterator<Map.Entry<String, PresenceManager.Subscription>> iterator = active.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, PresenceManager.Subscription> entry = iterator.next();
+            if (!userIds.contains(entry.getKey())) {
+                entry.getValue().remove();
+                iterator.remove();
+            }
+        }
+        for (String userId : userIds) {
+            if (!active.containsKey(userId)) {
+                active.put(userId, presence.watch(userId, listener));
+            }
+        }
+    }
+
+    public void clear() {
+        setVisible(Collections.emptySet());
+    }
+}
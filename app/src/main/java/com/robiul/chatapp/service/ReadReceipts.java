@@ -0,0 +1,128 @@
+package com.robiul.chatapp.service;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read receipts as a per-user "seen up to" timestamp on chats/{chatId}.seenUpTo,
+ * instead of an isSeen write on every message. Updates inside the coalesce
+ * window collapse into one batched write; a failed write is retried.
+ *
+ * The watermark is the timestamp of the newest message the reader received,
+ * which in a one-to-one chat is the other user's own clock, the same clock the
+ * sender compares its messages against. A message the sender wrote late with an
+ * old timestamp can still show as seen before the reader has it.
+ */
+public class ReadReceipts {
+    private static final String TAG = "ReadReceipts";
+    public static final long COALESCE_WINDOW_MS = 500;
+    private static final long RETRY_DELAY_MS = 5_000;
+
+    private final FirebaseFirestore db;
+    private final String currentUserId;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Map<String, Long> pendingWatermarks = new HashMap<>();
+    // Sent but not yet acknowledged by the server
+    private final Map<String, Long> inFlightWatermarks = new HashMap<>();
+    private final Map<String, Long> committedWatermarks = new HashMap<>();
+    private final Runnable flushRunnable = this::flush;
+
+    public ReadReceipts(FirebaseFirestore db, String currentUserId) {
+        this.db = db;
+        this.currentUserId = currentUserId;
+    }
+
+    public void markSeenUpTo(String chatId, long timestamp) {
+        if (timestamp <= currentWatermark(chatId)) return;
+
+        boolean idle = pendingWatermarks.isEmpty();
+        pendingWatermarks.put(chatId, timestamp);
+        if (idle) {
+            handler.postDelayed(flushRunnable, COALESCE_WINDOW_MS);
+        }
+    }
+
+    private long currentWatermark(String chatId) {
+        Long pending = pendingWatermarks.get(chatId);
+        if (pending != null) return pending;
+        return Math.max(valueOf(inFlightWatermarks, chatId), valueOf(committedWatermarks, chatId));
+    }
+
+    private static long valueOf(Map<String, Long> watermarks, String chatId) {
+        Long watermark = watermarks.get(chatId);
+        return watermark != null ? watermark : 0;
+    }
+
+    public void flush() {
+        handler.removeCallbacks(flushRunnable);
+        if (pendingWatermarks.isEmpty()) return;
+
+        Map<String, Long> sending = new HashMap<>(pendingWatermarks);
+        pendingWatermarks.clear();
+        WriteBatch batch = db.batch();
+        for (Map.Entry<String, Long> entry : sending.entrySet()) {
+            // Merge only touches this user's key inside the seenUpTo map
+            Map<String, Object> data = Collections.singletonMap("seenUpTo",
+                    Collections.singletonMap(currentUserId, entry.getValue()));
+            batch.set(db.collection("chats").document(entry.getKey()), data, SetOptions.merge());
+            inFlightWatermarks.put(entry.getKey(), entry.getValue());
+        }
+
+        batch.commit()
+                .addOnSuccessListener(aVoid -> {
+                    Log.d(TAG, "Read receipts updated for " + sending.size() + " chat(s)");
+                    for (Map.Entry<String, Long> entry : sending.entrySet()) {
+                        String chatId = entry.getKey();
+                        inFlightWatermarks.remove(chatId, entry.getValue());
+                        committedWatermarks.put(chatId, Math.max(entry.getValue(), valueOf(committedWatermarks, chatId)));
+                    }
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to update read receipts: " + e.getMessage());
+                    for (Map.Entry<String, Long> entry : sending.entrySet()) {
+                        String chatId = entry.getKey();
+                        inFlightWatermarks.remove(chatId, entry.getValue());
+                        // Back in line unless a newer watermark already replaced it
+                        if (entry.getValue() > currentWatermark(chatId)) {
+                            pendingWatermarks.put(chatId, entry.getValue());
+                        }
+                    }
+                    if (!pendingWatermarks.isEmpty()) {
+                        handler.removeCallbacks(flushRunnable);
+                        handler.postDelayed(flushRunnable, RETRY_DELAY_MS);
+                    }
+                });
+    }
+
+    // Follows how far userId has read in the chat
+    public ListenerRegistration listenToWatermark(String chatId, String userId, WatermarkCallback callback) {
+        DocumentReference chat = db.collection("chats").document(chatId);
+        return chat.addSnapshotListener((snapshot, error) -> {
+            if (error != null) {
+                Log.e(TAG, "Watermark listen failed: " + error);
+                return;
+            }
+            if (snapshot == null || !snapshot.exists()) return;
+
+            Object seenUpTo = snapshot.get("seenUpTo." + userId);
+            if (seenUpTo instanceof Number) {
+                callback.onWatermarkChanged(((Number) seenUpTo).longValue());
+            }
+        });
+    }
+
+    public interface WatermarkCallback {
+        void onWatermarkChanged(long seenUpTo);
+    }
+}
@@ -0,0 +1,36 @@
+package com.robiul.chatapp.service;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.robiul.chatapp.data.FieldReader;
+
+// FieldReader over a Firestore document, read one field at a time
+public class SnapshotFields implements FieldReader {
+    private final DocumentSnapshot document;
+
+    public SnapshotFields(DocumentSnapshot document) {
+        this.document = document;
+    }
+
+    @Override
+    public String getString(String field) {
+        Object value = document.get(field);
+        return value instanceof String ? (String) value : null;
+    }
+
+    @Override
+    public long getLong(String field, long fallback) {
+        // Older clients wrote some numbers as doubles; server timestamps read as epoch millis
+        Object value = document.get(field);
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toDate().getTime();
+        }
+        return value instanceof Number ? ((Number) value).longValue() : fallback;
+    }
+
+    @Override
+    public boolean getBoolean(String field, boolean fallback) {
+        Object value = document.get(field);
+        return value instanceof Boolean ? (Boolean) value : fallback;
+    }
+}
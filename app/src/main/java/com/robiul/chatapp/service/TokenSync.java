@@ -0,0 +1,161 @@
+package com.robiul.chatapp.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Keeps users/{uid}.fcmToken in step with this device's token using as few
+ * writes as possible. A hash of the last user and token written is kept on disk,
+ * so an unchanged token is never written again, across launches too. Calls made
+ * while a write is in flight are coalesced and only the latest token is written
+ * after it. A token that can't be written yet (signed out, or the write failed)
+ * stays pending until the next sync. Writing is left to the Writer.
+ */
+public class TokenSync {
+    private final Store store;
+    private final Writer writer;
+    private Request inFlight;
+    // Latest token asked for while a write was in flight
+    private Request queued;
+    // Bumped on sign out so a write finishing afterwards isn't remembered as synced
+    private int generation = 0;
+    private long writes = 0;
+    private long skipped = 0;
+    private long coalesced = 0;
+    private long failures = 0;
+
+    public TokenSync(Store store, Writer writer) {
+        this.store = store;
+        this.writer = writer;
+    }
+
+    public void sync(String userId, String token) {
+        if (token == null || token.isEmpty()) return;
+        Request request;
+        synchronized (this) {
+            if (userId == null) {
+                store.setPendingToken(token);
+                return;
+            }
+            request = new Request(userId, token, generation);
+            if (inFlight != null) {
+                coalesced++;
+                queued = inFlight.hash.equals(request.hash) && inFlight.generation == generation
+                        ? null : request;
+                return;
+            }
+            if (request.hash.equals(store.getSyncedHash())) {
+                skipped++;
+                if (token.equals(store.getPendingToken())) store.setPendingToken(null);
+                return;
+            }
+            inFlight = request;
+            writes++;
+        }
+        write(request);
+    }
+
+    // Writes a token left over from a signed-out refresh or a failed write
+    public void syncPending(String userId) {
+        String pending;
+        synchronized (this) {
+            pending = store.getPendingToken();
+        }
+        if (pending != null) sync(userId, pending);
+    }
+
+    // Signed out: the server copy is cleared, so the next sign in has to write again
+    public synchronized void reset() {
+        generation++;
+        queued = null;
+        store.setSyncedHash(null);
+    }
+
+    private void write(Request request) {
+        writer.write(request.userId, request.token, new Callback() {
+            @Override
+            public void onWritten() {
+                finish(request, true);
+            }
+
+            @Override
+            public void onFailed(String error) {
+                finish(request, false);
+            }
+        });
+    }
+
+    private void finish(Request request, boolean written) {
+        Request next;
+        synchronized (this) {
+            if (inFlight != request) return;
+            inFlight = null;
+            if (request.generation == generation) {
+                if (written) {
+                    store.setSyncedHash(request.hash);
+                    // Whatever was pending is older than the token just written
+                    store.setPendingToken(null);
+                } else {
+                    failures++;
+                    store.setPendingToken(request.token);
+                }
+            }
+            next = queued;
+            queued = null;
+        }
+        if (next != null) sync(next.userId, next.token);
+    }
+
+    public synchronized String getStats() {
+        return "writes=" + writes + " skipped=" + skipped + " coalesced=" + coalesced + " failures=" + failures;
+    }
+
+    public synchronized long getWrites() {
+        return writes;
+    }
+
+    static String hash(String userId, String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = digest.digest((userId + "\n" + token).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Request {
+        final String userId;
+        final String token;
+        final String hash;
+        final int generation;
+
+        Request(String userId, String token, int generation) {
+            this.userId = userId;
+            this.token = token;
+            this.hash = hash(userId, token);
+            this.generation = generation;
+        }
+    }
+
+    // Survives restarts (SharedPreferences in the app)
+    public interface Store {
+        String getSyncedHash();
+        void setSyncedHash(String hash);
+        String getPendingToken();
+        void setPendingToken(String token);
+    }
+
+    public interface Writer {
+        void write(String userId, String token, Callback callback);
+    }
+
+    public interface Callback {
+        void onWritten();
+        void onFailed(String error);
+    }
+}
@@ -0,0 +1,208 @@
+package com.robiul.chatapp.service;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.robiul.chatapp.data.UserCache;
+import com.robiul.chatapp.data.UserCodec;
+import com.robiul.chatapp.models.User;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Pages through the users collection ordered by name, optionally narrowed to a
+ * name prefix. Holds the cursor for the current search, so create one per screen.
+ */
+public class UserDirectory {
+    private static final String TAG = "UserDirectory";
+    public static final int DEFAULT_PAGE_SIZE = 30;
+    // Upper bound on profiles pulled by one delta refresh; the rest come on the next one
+    private static final int REFRESH_LIMIT = 200;
+
+    private final FirebaseFirestore db;
+    private final String currentUserId;
+    private final int pageSize;
+    private final UserCache cache;
+    private final Executor ioExecutor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private String prefix = "";
+    private DocumentSnapshot cursor;
+    private boolean hasMore = true;
+    private boolean loading = false;
+    // Bumped on every new search so late pages from an old one are dropped
+    private int generation = 0;
+
+    public UserDirectory(FirebaseFirestore db, String currentUserId, int pageSize,
+                         UserCache cache, Executor ioExecutor) {
+        this.db = db;
+        this.currentUserId = currentUserId;
+        this.pageSize = pageSize;
+        this.cache = cache;
+        this.ioExecutor = ioExecutor;
+    }
+
+    // Starts a new search; the next loadNextPage returns its first page
+    public void search(String prefix) {
+        this.prefix = prefix != null ? prefix.trim() : "";
+        cursor = null;
+        hasMore = true;
+        loading = false;
+        generation++;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    // First page of the current search straight from the cache, before the network answers
+    public void loadCachedFirstPage(PageCallback callback) {
+        String searchPrefix = prefix;
+        int requestGeneration = generation;
+        ioExecutor.execute(() -> {
+            List<User> cached = cache.loadPage(searchPrefix, pageSize);
+            List<User> users = new ArrayList<>(cached.size());
+            for (User user : cached) {
+                if (!user.getUserId().equals(currentUserId)) users.add(user);
+            }
+            mainHandler.post(() -> {
+                if (requestGeneration == generation) callback.onPageLoaded(users, hasMore);
+            });
+        });
+    }
+
+    // The profile fields with updatedAt from the server clock, which delta refreshes page on
+    public static Map<String, Object> toDocument(User user) {
+        Map<String, Object> data = UserCodec.encode(user);
+        data.put(UserCodec.UPDATED_AT, FieldValue.serverTimestamp());
+        return data;
+    }
+
+    /**
+     * Pulls only profiles whose updatedAt moved since the last refresh into the cache,
+     * paging on (updatedAt, document id) so profiles sharing the last updatedAt aren't
+     * dropped. Profiles still carrying a number or no updatedAt from older clients sort
+     * before every server timestamp and are left to the pages.
+     */
+    public void refreshChanged(RefreshCallback callback) {
+        long since = cache.getLastRefreshUpdatedAt();
+        // Seeded by the first page from the server, see readPage
+        if (since == 0) return;
+
+        // A millisecond cursor can fetch a profile twice, never skip one
+        db.collection("users")
+                .orderBy(UserCodec.UPDATED_AT)
+                .orderBy(FieldPath.documentId())
+                .startAfter(new Timestamp(new Date(since)), cache.getLastRefreshUserId())
+                .limit(REFRESH_LIMIT)
+                .get()
+                .addOnSuccessListener(snapshot -> {
+                    List<DocumentSnapshot> documents = snapshot.getDocuments();
+                    List<User> changed = new ArrayList<>(documents.size());
+                    long bytes = 0;
+                    for (DocumentSnapshot document : documents) {
+                        User user = UserCodec.decode(new SnapshotFields(document));
+                        bytes += estimateSize(user);
+                        changed.add(user);
+                    }
+
+                    ioExecutor.execute(() -> {
+                        cache.putAll(changed);
+                        if (!documents.isEmpty()) {
+                            DocumentSnapshot last = documents.get(documents.size() - 1);
+                            cache.setLastRefresh(new SnapshotFields(last).getLong(UserCodec.UPDATED_AT, since), last.getId());
+                        }
+                    });
+                    cache.getMetrics().recordRefresh(changed.size(), bytes);
+                    Log.d(TAG, "User cache refresh: " + changed.size() + " changed, " + cache.getMetrics());
+                    callback.onUsersChanged(changed);
+                })
+                .addOnFailureListener(e -> Log.e(TAG, "User cache refresh failed: " + e.getMessage()));
+    }
+
+    // Rough wire size of a profile, for refresh byte metrics
+    private long estimateSize(User user) {
+        long size = 32; // document name and field overhead
+        for (String field : new String[]{user.getUserId(), user.getName(), user.getEmail(), user.getFcmToken()}) {
+            if (field != null) size += field.length();
+        }
+        return size;
+    }
+
+    public void loadNextPage(PageCallback callback) {
+        if (loading || !hasMore) return;
+        loading = true;
+
+        Query query = db.collection("users").orderBy("name");
+        if (!prefix.isEmpty()) {
+            query = query.startAt(prefix).endAt(prefix + "\uf8ff");
+        }
+        if (cursor != null) {
+            query = query.startAfter(cursor);
+        }
+
+        int requestGeneration = generation;
+        query.limit(pageSize)
+                .get()
+                .addOnSuccessListener(snapshot -> {
+                    if (requestGeneration != generation) return;
+                    loading = false;
+                    callback.onPageLoaded(readPage(snapshot), hasMore);
+                })
+                .addOnFailureListener(e -> {
+                    if (requestGeneration != generation) return;
+                    loading = false;
+                    Log.e(TAG, "Error getting users: " + e.getMessage());
+                    callback.onError(e.getMessage());
+                });
+    }
+
+    private List<User> readPage(QuerySnapshot snapshot) {
+        List<DocumentSnapshot> documents = snapshot.getDocuments();
+        hasMore = documents.size() == pageSize;
+        if (!documents.isEmpty()) {
+            cursor = documents.get(documents.size() - 1);
+        }
+
+        List<User> users = new ArrayList<>(documents.size());
+        long newest = 0;
+        for (DocumentSnapshot document : documents) {
+            User user = UserCodec.decode(new SnapshotFields(document));
+            newest = Math.max(newest, user.getUpdatedAt());
+            // Filtered here rather than in the query, which would need userId as first orderBy
+            if (document.getId().equals(currentUserId)) continue;
+            users.add(user);
+        }
+
+        // Everything on this page is current as of its newest updatedAt, and anything changed
+        // later is stamped later by the server, so delta refreshes can start there
+        if (!documents.isEmpty() && cache.getLastRefreshUpdatedAt() == 0) {
+            long seed = Math.max(1, newest);
+            ioExecutor.execute(() -> cache.seedLastRefresh(seed));
+        }
+
+        // Write through so the next open can start from disk
+        ioExecutor.execute(() -> cache.putAll(users));
+        return users;
+    }
+
+    public interface RefreshCallback {
+        void onUsersChanged(List<User> changed);
+    }
+
+    public interface PageCallback {
+        void onPageLoaded(List<User> users, boolean hasMore);
+        void onError(String error);
+    }
+}
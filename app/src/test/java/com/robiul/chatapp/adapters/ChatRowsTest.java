@@ -0,0 +1,132 @@
+package com.robiul.chatapp.adapters;
+
+import com.robiul.chatapp.models.ChatMessage;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ChatRowsTest {
+    private static final long DAY_MS = 24 * 60 * 60_000L;
+    private static final long MINUTE_MS = 60_000L;
+    private static final long DAY_ONE = 20_000 * DAY_MS;
+
+    private final ChatRows rows = new ChatRows();
+
+    private static MessageItem item(String id, String sender, long timestamp) {
+        return item(id, sender, timestamp, false);
+    }
+
+    private static MessageItem item(String id, String sender, long timestamp, boolean pending) {
+        ChatMessage message = new ChatMessage(sender, "other", "text " + id);
+        message.setMessageId(id);
+        message.setTimestamp(timestamp);
+        message.setPending(pending);
+        long dayKey = Math.floorDiv(timestamp, DAY_MS);
+        return new MessageItem(message, MessageItem.VIEW_TYPE_SENT, dayKey, "day " + dayKey, "00:00",
+                message.getMessage(), false, true);
+    }
+
+    private String layout() {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < rows.size(); i++) {
+            MessageItem row = rows.get(i);
+            if (out.length() > 0) out.append(' ');
+            if (row.isDayHeader()) {
+                out.append('[').append(row.dayKey - 20_000).append(']');
+            } else {
+                out.append(row.message.getMessageId());
+                if (row.groupedWithPrevious) out.append('^');
+                if (row.showTime) out.append('*');
+            }
+        }
+        return out.toString();
+    }
+
+    @Test
+    public void firstMessageOfEachDayGetsHeader() {
+        rows.put(item("a", "alice", DAY_ONE + MINUTE_MS));
+        rows.put(item("b", "bob", DAY_ONE + DAY_MS + MINUTE_MS));
+
+        assertEquals("[0] a* [1] b*", layout());
+    }
+
+    @Test
+    public void consecutiveMessagesFromSameSenderFormARun() {
+        rows.put(item("a", "alice", DAY_ONE + MINUTE_MS));
+        rows.put(item("b", "alice", DAY_ONE + 2 * MINUTE_MS));
+        rows.put(item("c", "alice", DAY_ONE + 3 * MINUTE_MS));
+        rows.put(item("d", "bob", DAY_ONE + 4 * MINUTE_MS));
+
+        // Only the last of a run shows the time
+        assertEquals("[0] a b^ c^* d*", layout());
+    }
+
+    @Test
+    public void longPauseStartsNewRun() {
+        rows.put(item("a", "alice", DAY_ONE + MINUTE_MS));
+        rows.put(item("b", "alice", DAY_ONE + MINUTE_MS + ChatRows.GROUP_WINDOW_MS + 1));
+
+        assertEquals("[0] a* b*", layout());
+    }
+
+    @Test
+    public void runDoesNotCrossDays() {
+        rows.put(item("a", "alice", DAY_ONE + DAY_MS - MINUTE_MS));
+        rows.put(item("b", "alice", DAY_ONE + DAY_MS + MINUTE_MS));
+
+        assertEquals("[0] a* [1] b*", layout());
+    }
+
+    @Test
+    public void olderMessageLandsBeforeItsDayAndRegroupsNeighbours() {
+        rows.put(item("b", "alice", DAY_ONE + 2 * MINUTE_MS));
+        rows.put(item("c", "alice", DAY_ONE + DAY_MS + MINUTE_MS));
+        rows.put(item("a", "alice", DAY_ONE + MINUTE_MS));
+
+        assertEquals("[0] a b^* [1] c*", layout());
+    }
+
+    @Test
+    public void removingLastMessageOfDayDropsHeader() {
+        rows.put(item("a", "alice", DAY_ONE + MINUTE_MS));
+        rows.put(item("b", "alice", DAY_ONE + DAY_MS + MINUTE_MS));
+        rows.put(item("c", "alice", DAY_ONE + DAY_MS + 2 * MINUTE_MS));
+
+        rows.remove("a");
+        assertEquals("[1] b c^*", layout());
+
+        rows.remove("c");
+        assertEquals("[1] b*", layout());
+    }
+
+    @Test
+    public void removingOtherSenderJoinsTheRunAroundIt() {
+        rows.put(item("a", "alice", DAY_ONE + MINUTE_MS));
+        rows.put(item("b", "bob", DAY_ONE + 2 * MINUTE_MS));
+        rows.put(item("c", "alice", DAY_ONE + 3 * MINUTE_MS));
+
+        rows.remove("b");
+
+        assertEquals("[0] a c^*", layout());
+    }
+
+    @Test
+    public void serverEchoReplacesPendingButNotTheOtherWayRound() {
+        rows.put(item("a", "alice", DAY_ONE + MINUTE_MS, true));
+        rows.put(item("a", "alice", DAY_ONE + MINUTE_MS, false));
+        rows.put(item("a", "alice", DAY_ONE + MINUTE_MS, true));
+
+        assertEquals(2, rows.size());
+        assertFalse(rows.get(1).message.isPending());
+    }
+
+    @Test
+    public void insertionPointSkipsHeadersOfLaterDays() {
+        rows.put(item("a", "alice", DAY_ONE + MINUTE_MS));
+        rows.put(item("b", "alice", DAY_ONE + DAY_MS + MINUTE_MS));
+
+        long timestamp = DAY_ONE + 2 * MINUTE_MS;
+        assertEquals(2, ChatRows.insertionPoint(rows.snapshot(), timestamp, Math.floorDiv(timestamp, DAY_MS)));
+    }
+}
@@ -0,0 +1,35 @@
+package com.robiul.chatapp.adapters;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class TimeLabelsTest {
+    private final TimeLabels labels = new TimeLabels(Locale.US, TimeZone.getTimeZone("UTC"));
+
+    @Test
+    public void formatsHoursAndMinutes() {
+        assertEquals("00:00", labels.label(0));
+        assertEquals("13:05", labels.label((13 * 60 + 5) * 60_000L + 42_000L));
+    }
+
+    @Test
+    public void sameMinuteSharesOneLabel() {
+        long minute = 1_700_000_040_000L;
+        assertSame(labels.label(minute), labels.label(minute + 59_999));
+        assertNotSame(labels.label(minute), labels.label(minute + 60_000));
+    }
+
+    @Test
+    public void dayLabelsAreRelativeToToday() {
+        long now = 1_700_000_000_000L;
+        long day = 24 * 60 * 60_000L;
+
+        assertEquals("Today", labels.dayLabel(now - 60_000, now));
+        assertEquals("Yesterday", labels.dayLabel(now - day, now));
+        assertEquals("Sun, 12 Nov 2023", labels.dayLabel(now - 2 * day, now));
+    }
+}
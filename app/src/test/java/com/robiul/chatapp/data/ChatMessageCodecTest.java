@@ -0,0 +1,81 @@
+package com.robiul.chatapp.data;
+
+import com.robiul.chatapp.models.ChatMessage;
+import com.robiul.chatapp.models.User;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ChatMessageCodecTest {
+
+    private static ChatMessage message() {
+        ChatMessage message = new ChatMessage("alice", "bob", "hello");
+        message.setMessageId("m1");
+        message.setChatId("alice_bob");
+        message.setTimestamp(1234L);
+        message.setSeen(true);
+        return message;
+    }
+
+    @Test
+    public void messageRoundTrips() {
+        ChatMessage decoded = ChatMessageCodec.decode(new MapFields(ChatMessageCodec.encode(message())));
+
+        assertEquals("m1", decoded.getMessageId());
+        assertEquals("alice", decoded.getSenderId());
+        assertEquals("bob", decoded.getReceiverId());
+        assertEquals("hello", decoded.getMessage());
+        assertEquals("alice_bob", decoded.getChatId());
+        assertEquals("text", decoded.getMessageType());
+        assertEquals(1234L, decoded.getTimestamp());
+        assertTrue(decoded.isSeen());
+    }
+
+    @Test
+    public void decodesDoubleTimestampAndMissingSeen() {
+        Map<String, Object> data = ChatMessageCodec.encode(message());
+        data.put(ChatMessageCodec.TIMESTAMP, 1234.0);
+        data.remove(ChatMessageCodec.IS_SEEN);
+
+        ChatMessage decoded = ChatMessageCodec.decode(new MapFields(data));
+
+        assertEquals(1234L, decoded.getTimestamp());
+        assertFalse(decoded.isSeen());
+    }
+
+    @Test
+    public void decodesStringPayload() {
+        // FCM data payloads carry every value as a string
+        Map<String, String> data = new HashMap<>();
+        data.put(ChatMessageCodec.MESSAGE_ID, "m2");
+        data.put(ChatMessageCodec.TIMESTAMP, "5678");
+        data.put(ChatMessageCodec.IS_SEEN, "true");
+
+        ChatMessage decoded = ChatMessageCodec.decode(new MapFields(data));
+
+        assertEquals("m2", decoded.getMessageId());
+        assertEquals(5678L, decoded.getTimestamp());
+        assertTrue(decoded.isSeen());
+        assertNull(decoded.getMessage());
+    }
+
+    @Test
+    public void userRoundTrips() {
+        User user = new User("u1", "a@example.com", "Alice");
+        user.setFcmToken("token");
+        user.setUpdatedAt(99L);
+
+        User decoded = UserCodec.decode(new MapFields(UserCodec.encode(user)));
+
+        assertEquals("u1", decoded.getUserId());
+        assertEquals("a@example.com", decoded.getEmail());
+        assertEquals("Alice", decoded.getName());
+        assertEquals("token", decoded.getFcmToken());
+        assertEquals(99L, decoded.getUpdatedAt());
+        assertNull(decoded.getProfileImage());
+    }
+}
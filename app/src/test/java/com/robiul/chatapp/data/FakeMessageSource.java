@@ -0,0 +1,110 @@
+package com.robiul.chatapp.data;
+
+import com.robiul.chatapp.models.ChatMessage;
+import com.robiul.chatapp.models.MessageDelta;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stand-in for Firestore: a sorted list of server messages plus one live listener.
+ * Each added message gets a syncedAt from a server clock that follows the sender's
+ * timestamp but never runs backwards, so a late message with an old timestamp
+ * still sorts after everything accepted before it.
+ */
+public class FakeMessageSource implements MessageSource {
+    public final List<ChatMessage> server = new ArrayList<>();
+    public long lastListenAfter = -1;
+    public int documentsRead = 0;
+    public int listenCount = 0;
+
+    private Listener listener;
+    private long listenAfter;
+    // Oldest timestamp in a full window by timestamp; later messages below it are not delivered
+    private long windowStart;
+    private long serverClock = 0;
+
+    public void add(ChatMessage message) {
+        serverClock = Math.max(serverClock + 1, message.getTimestamp());
+        message.setSyncedAt(serverClock);
+        server.add(message);
+        Collections.sort(server, MessageStore.ORDER);
+        boolean inWindow = listenAfter > 0
+                ? message.getSyncedAt() > listenAfter
+                : message.getTimestamp() >= windowStart;
+        if (listener != null && inWindow) {
+            documentsRead++;
+            List<ChatMessage> added = new ArrayList<>();
+            added.add(message);
+            listener.onDelta(new MessageDelta(added, new ArrayList<>(), new ArrayList<>()));
+        }
+    }
+
+    @Override
+    public Registration listen(String chatId, long afterSyncedAt, int limit, Listener listener) {
+        this.listener = listener;
+        this.listenAfter = afterSyncedAt;
+        listenCount++;
+        this.lastListenAfter = afterSyncedAt;
+
+        List<ChatMessage> window = afterSyncedAt > 0 ? newestAccepted(afterSyncedAt, limit) : newest(limit);
+        windowStart = window.size() < limit ? Long.MIN_VALUE : window.get(0).getTimestamp();
+        documentsRead += window.size();
+        listener.onDelta(new MessageDelta(window, new ArrayList<>(), new ArrayList<>()));
+        return () -> this.listener = null;
+    }
+
+    @Override
+    public void fetchAfter(String chatId, long afterSyncedAt, int limit, FetchCallback callback) {
+        List<ChatMessage> page = newestAccepted(afterSyncedAt, limit);
+        documentsRead += page.size();
+        callback.onFetched(page);
+    }
+
+    @Override
+    public void fetchBefore(String chatId, long beforeTimestamp, String beforeMessageId, int limit,
+                            FetchCallback callback) {
+        ChatMessage cursor = new ChatMessage();
+        cursor.setTimestamp(beforeTimestamp);
+        cursor.setMessageId(beforeMessageId);
+        List<ChatMessage> page = new ArrayList<>();
+        for (int i = server.size() - 1; i >= 0 && page.size() < limit; i--) {
+            ChatMessage message = server.get(i);
+            if (MessageStore.ORDER.compare(message, cursor) < 0) page.add(0, message);
+        }
+        documentsRead += page.size();
+        callback.onFetched(page);
+    }
+
+    // Ends the live listener the way Firestore does, with a terminal error
+    public void fail(String error) {
+        Listener failed = listener;
+        listener = null;
+        failed.onError(error);
+    }
+
+    public boolean isListening() {
+        return listener != null;
+    }
+
+    private List<ChatMessage> newest(int limit) {
+        List<ChatMessage> window = new ArrayList<>();
+        for (int i = server.size() - 1; i >= 0 && window.size() < limit; i--) {
+            window.add(0, server.get(i));
+        }
+        return window;
+    }
+
+    // Newest by syncedAt, returned oldest timestamp first like the Firestore source
+    private List<ChatMessage> newestAccepted(long afterSyncedAt, int limit) {
+        List<ChatMessage> accepted = new ArrayList<>();
+        for (ChatMessage message : server) {
+            if (message.getSyncedAt() > afterSyncedAt) accepted.add(message);
+        }
+        Collections.sort(accepted, (m1, m2) -> Long.compare(m2.getSyncedAt(), m1.getSyncedAt()));
+        List<ChatMessage> page = new ArrayList<>(accepted.subList(0, Math.min(limit, accepted.size())));
+        Collections.sort(page, (m1, m2) -> Long.compare(m1.getTimestamp(), m2.getTimestamp()));
+        return page;
+    }
+}
@@ -0,0 +1,77 @@
+package com.robiul.chatapp.data;
+
+import com.robiul.chatapp.models.ChatMessage;
+import com.robiul.chatapp.models.MessageDelta;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// MessageStore kept in memory, ordered the same way as the SQLite (chatId, timestamp) index
+public class InMemoryMessageStore implements MessageStore {
+    private final Map<String, TreeMap<String, ChatMessage>> chats = new HashMap<>();
+    private final Map<String, Long> lastSynced = new HashMap<>();
+
+    private TreeMap<String, ChatMessage> chat(String chatId) {
+        return chats.computeIfAbsent(chatId, id -> new TreeMap<>());
+    }
+
+    // Timestamp first so iteration order matches the index, messageId to keep keys unique
+    private static String key(ChatMessage message) {
+        return String.format("%020d_%s", message.getTimestamp(), message.getMessageId());
+    }
+
+    @Override
+    public List<ChatMessage> loadLatest(String chatId, int limit) {
+        return newest(chat(chatId), limit);
+    }
+
+    @Override
+    public List<ChatMessage> loadBefore(String chatId, long beforeTimestamp, String beforeMessageId, int limit) {
+        ChatMessage cursor = new ChatMessage();
+        cursor.setTimestamp(beforeTimestamp);
+        cursor.setMessageId(beforeMessageId);
+        return newest(chat(chatId).headMap(key(cursor), false), limit);
+    }
+
+    private static List<ChatMessage> newest(SortedMap<String, ChatMessage> messages, int limit) {
+        List<ChatMessage> result = new ArrayList<>();
+        List<ChatMessage> all = new ArrayList<>(messages.values());
+        for (int i = all.size() - 1; i >= 0 && result.size() < limit; i--) {
+            result.add(0, all.get(i));
+        }
+        return result;
+    }
+
+    @Override
+    public void apply(String chatId, MessageDelta delta) {
+        TreeMap<String, ChatMessage> chat = chat(chatId);
+        for (ChatMessage message : delta.getRemoved()) chat.values().removeIf(m -> m.getMessageId().equals(message.getMessageId()));
+        for (ChatMessage message : delta.getModified()) chat.put(key(message), message);
+        for (ChatMessage message : delta.getAdded()) chat.put(key(message), message);
+    }
+
+    @Override
+    public void clearChat(String chatId) {
+        chats.remove(chatId);
+        lastSynced.remove(chatId);
+    }
+
+    @Override
+    public long getLastSyncedTimestamp(String chatId) {
+        Long timestamp = lastSynced.get(chatId);
+        return timestamp != null ? timestamp : 0;
+    }
+
+    @Override
+    public void setLastSyncedTimestamp(String chatId, long timestamp) {
+        lastSynced.put(chatId, Math.max(getLastSyncedTimestamp(chatId), timestamp));
+    }
+
+    public int size(String chatId) {
+        return chat(chatId).size();
+    }
+}
@@ -0,0 +1,297 @@
+package com.robiul.chatapp.data;
+
+import com.robiul.chatapp.models.ChatMessage;
+import com.robiul.chatapp.models.MessageDelta;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MessageSyncTest {
+    private static final String CHAT_ID = "alice_bob";
+    private static final int PAGE_SIZE = 50;
+
+    private InMemoryMessageStore store;
+    private FakeMessageSource source;
+    private MessageSync sync;
+    private List<MessageDelta> deltas;
+
+    @Before
+    public void setUp() {
+        store = new InMemoryMessageStore();
+        source = new FakeMessageSource();
+        // Direct executors keep the test single-threaded and deterministic
+        sync = new MessageSync(store, source, Runnable::run, Runnable::run);
+        deltas = new ArrayList<>();
+    }
+
+    private static ChatMessage message(int i) {
+        ChatMessage message = new ChatMessage("alice", "bob", "message " + i);
+        message.setMessageId("m" + i);
+        message.setChatId(CHAT_ID);
+        message.setTimestamp(1000L + i);
+        return message;
+    }
+
+    private MessageSource.Listener collector() {
+        return new MessageSource.Listener() {
+            @Override
+            public void onDelta(MessageDelta delta) {
+                deltas.add(delta);
+            }
+
+            @Override
+            public void onError(String error) {
+                fail(error);
+            }
+        };
+    }
+
+    @Test
+    public void firstOpenFillsStoreFromServer() {
+        for (int i = 0; i < 10; i++) source.add(message(i));
+
+        sync.open(CHAT_ID, PAGE_SIZE, collector());
+
+        assertEquals(0, source.lastListenAfter);
+        assertEquals(1, deltas.size());
+        assertEquals(10, deltas.get(0).getAdded().size());
+        assertEquals(10, store.size(CHAT_ID));
+        assertEquals(1009, store.getLastSyncedTimestamp(CHAT_ID));
+    }
+
+    @Test
+    public void reopenRendersFromDiskAndOnlyFetchesDelta() {
+        for (int i = 0; i < 10_000; i++) source.add(message(i));
+        sync.open(CHAT_ID, PAGE_SIZE, collector()).remove();
+        // Page the whole thread onto disk like a user scrolling to the top
+        while (true) {
+            List<ChatMessage> page = new ArrayList<>();
+            ChatMessage oldest = store.loadLatest(CHAT_ID, Integer.MAX_VALUE).get(0);
+            sync.loadOlder(CHAT_ID, oldest.getTimestamp(), oldest.getMessageId(), 1000, new MessageSource.FetchCallback() {
+                @Override
+                public void onFetched(List<ChatMessage> messages) {
+                    page.addAll(messages);
+                }
+
+                @Override
+                public void onError(String error) {
+                    fail(error);
+                }
+            });
+            if (page.isEmpty()) break;
+        }
+        assertEquals(10_000, store.size(CHAT_ID));
+
+        source.add(message(10_000));
+        source.add(message(10_001));
+        deltas.clear();
+        source.documentsRead = 0;
+
+        long start = System.nanoTime();
+        sync.open(CHAT_ID, PAGE_SIZE, collector());
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        // Cached window first, then only the two new messages from the server
+        assertEquals(2, deltas.size());
+        assertEquals(PAGE_SIZE, deltas.get(0).getAdded().size());
+        assertEquals("m9999", deltas.get(0).getAdded().get(PAGE_SIZE - 1).getMessageId());
+        assertEquals(9999 + 1000, source.lastListenAfter);
+        assertEquals(2, deltas.get(1).getAdded().size());
+        assertEquals(2, source.documentsRead);
+        assertTrue("Cold open took " + elapsedMs + " ms", elapsedMs < 100);
+    }
+
+    @Test
+    public void gapAfterLongAbsenceDropsStaleHistory() {
+        for (int i = 0; i < 5; i++) source.add(message(i));
+        sync.open(CHAT_ID, PAGE_SIZE, collector()).remove();
+
+        // More than a full window arrives while the chat is closed
+        for (int i = 5; i < 5 + PAGE_SIZE * 2; i++) source.add(message(i));
+        deltas.clear();
+        sync.open(CHAT_ID, PAGE_SIZE, collector());
+
+        MessageDelta remote = deltas.get(1);
+        assertEquals(PAGE_SIZE, remote.getAdded().size());
+        assertEquals(5, remote.getRemoved().size());
+        assertEquals(PAGE_SIZE, store.size(CHAT_ID));
+    }
+
+    @Test
+    public void olderPagesComeFromDiskBeforeServer() {
+        for (int i = 0; i < 120; i++) source.add(message(i));
+        sync.open(CHAT_ID, 20, collector());
+        List<ChatMessage> page = new ArrayList<>();
+        MessageSource.FetchCallback callback = new MessageSource.FetchCallback() {
+            @Override
+            public void onFetched(List<ChatMessage> messages) {
+                page.clear();
+                page.addAll(messages);
+            }
+
+            @Override
+            public void onError(String error) {
+                fail(error);
+            }
+        };
+
+        sync.loadOlder(CHAT_ID, 1100, "m100", 20, callback);
+        assertEquals(20, page.size());
+        assertEquals("m80", page.get(0).getMessageId());
+
+        // Second time the same page is on disk, so the server is not asked again
+        source.documentsRead = 0;
+        sync.loadOlder(CHAT_ID, 1100, "m100", 20, callback);
+        assertEquals(20, page.size());
+        assertEquals(0, source.documentsRead);
+    }
+
+    @Test
+    public void pushedMessageOpensWithoutFetching() {
+        for (int i = 0; i < 5; i++) source.add(message(i));
+        sync.open(CHAT_ID, PAGE_SIZE, collector()).remove();
+
+        source.add(message(5));
+        sync.writeThrough(message(5), PAGE_SIZE);
+        assertEquals(6, store.size(CHAT_ID));
+        // Everything since the sync point fit in one page, so it moves up to the push
+        assertEquals(1005, store.getLastSyncedTimestamp(CHAT_ID));
+
+        deltas.clear();
+        source.documentsRead = 0;
+        sync.open(CHAT_ID, PAGE_SIZE, collector());
+        List<ChatMessage> cached = deltas.get(0).getAdded();
+        assertEquals("m5", cached.get(cached.size() - 1).getMessageId());
+        assertEquals(0, source.documentsRead);
+    }
+
+    @Test
+    public void pushAfterLongAbsenceRestartsFromFetchedPage() {
+        for (int i = 0; i < 5; i++) source.add(message(i));
+        sync.open(CHAT_ID, PAGE_SIZE, collector()).remove();
+
+        int last = 5 + PAGE_SIZE * 2;
+        for (int i = 5; i <= last; i++) source.add(message(i));
+        sync.writeThrough(message(last), PAGE_SIZE);
+
+        // More arrived than one page holds, so only the page is kept
+        assertEquals(PAGE_SIZE, store.size(CHAT_ID));
+        assertEquals(1000 + last, store.getLastSyncedTimestamp(CHAT_ID));
+        assertEquals("m" + last, store.loadLatest(CHAT_ID, 1).get(0).getMessageId());
+    }
+
+    @Test
+    public void pushAlreadySyncedReadsNothingNew() {
+        for (int i = 0; i < 5; i++) source.add(message(i));
+        sync.open(CHAT_ID, PAGE_SIZE, collector());
+
+        source.documentsRead = 0;
+        sync.writeThrough(message(4), PAGE_SIZE);
+        assertEquals(0, source.documentsRead);
+        assertEquals(5, store.size(CHAT_ID));
+    }
+
+    // Written late by the sender, e.g. from the outbox after a long time offline
+    private ChatMessage lateMessage(long timestamp) {
+        ChatMessage message = new ChatMessage("bob", "alice", "late");
+        message.setMessageId("late");
+        message.setChatId(CHAT_ID);
+        message.setTimestamp(timestamp);
+        return message;
+    }
+
+    @Test
+    public void lateMessageWithOldTimestampIsSyncedOnReopen() {
+        for (int i = 0; i < 10; i++) source.add(message(i));
+        sync.open(CHAT_ID, PAGE_SIZE, collector()).remove();
+
+        // Older than the sync point by its own timestamp, newer by the server's clock
+        source.add(lateMessage(1003));
+        deltas.clear();
+        sync.open(CHAT_ID, PAGE_SIZE, collector());
+
+        assertEquals(1, deltas.get(1).getAdded().size());
+        assertEquals("late", deltas.get(1).getAdded().get(0).getMessageId());
+        assertEquals(11, store.size(CHAT_ID));
+        // And the disk range it falls in now serves it to loadOlder
+        List<ChatMessage> older = store.loadBefore(CHAT_ID, 1005, "m5", 10);
+        assertTrue(older.stream().anyMatch(m -> m.getMessageId().equals("late")));
+    }
+
+    @Test
+    public void lateMessageBelowFirstWindowIsNotSkippedBySyncPoint() {
+        for (int i = 0; i < 10; i++) source.add(message(i));
+        // First open is a window by timestamp that can't see below 1005
+        MessageSource.Registration registration = sync.open(CHAT_ID, 5, collector());
+        source.add(lateMessage(1001));
+        source.add(message(10));
+        registration.remove();
+
+        sync.open(CHAT_ID, 5, collector());
+
+        assertEquals(1009, source.lastListenAfter);
+        assertEquals("late", store.loadBefore(CHAT_ID, 1002, "m2", 1).get(0).getMessageId());
+    }
+
+    @Test
+    public void pushedLateMessageStillMovesSyncPastIt() {
+        for (int i = 0; i < 5; i++) source.add(message(i));
+        sync.open(CHAT_ID, PAGE_SIZE, collector()).remove();
+
+        ChatMessage late = lateMessage(1002);
+        source.add(late);
+        sync.writeThrough(lateMessage(1002), PAGE_SIZE);
+
+        assertEquals(6, store.size(CHAT_ID));
+        assertEquals(late.getSyncedAt(), store.getLastSyncedTimestamp(CHAT_ID));
+    }
+
+    @Test
+    public void olderPagesKeepMessagesSharingTheBoundaryMillisecond() {
+        // A batched send or outbox flush can stamp many messages with the same time
+        for (int i = 0; i < 30; i++) {
+            ChatMessage message = message(i);
+            message.setMessageId(String.format("t%02d", i));
+            message.setTimestamp(2000);
+            source.add(message);
+        }
+        sync.open(CHAT_ID, 10, collector());
+
+        List<ChatMessage> loaded = new ArrayList<>(store.loadLatest(CHAT_ID, 10));
+        while (true) {
+            List<ChatMessage> page = new ArrayList<>();
+            ChatMessage oldest = loaded.get(0);
+            sync.loadOlder(CHAT_ID, oldest.getTimestamp(), oldest.getMessageId(), 10, new MessageSource.FetchCallback() {
+                @Override
+                public void onFetched(List<ChatMessage> messages) {
+                    page.addAll(messages);
+                }
+
+                @Override
+                public void onError(String error) {
+                    fail(error);
+                }
+            });
+            if (page.isEmpty()) break;
+            loaded.addAll(0, page);
+        }
+
+        assertEquals(30, loaded.size());
+        for (int i = 0; i < 30; i++) {
+            assertEquals(String.format("t%02d", i), loaded.get(i).getMessageId());
+        }
+    }
+
+    @Test
+    public void removingRegistrationDetachesRemoteListener() {
+        MessageSource.Registration registration = sync.open(CHAT_ID, PAGE_SIZE, collector());
+        assertTrue(source.isListening());
+        registration.remove();
+        assertFalse(source.isListening());
+    }
+}
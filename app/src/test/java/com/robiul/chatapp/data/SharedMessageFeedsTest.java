@@ -0,0 +1,227 @@
+package com.robiul.chatapp.data;
+
+import com.robiul.chatapp.models.ChatMessage;
+import com.robiul.chatapp.models.MessageDelta;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SharedMessageFeedsTest {
+    private static final String CHAT_ID = "alice_bob";
+    private static final int PAGE_SIZE = 50;
+    private static final long LINGER_MS = 10_000;
+
+    private FakeMessageSource source;
+    private InMemoryMessageStore store;
+    private SharedMessageFeeds feeds;
+    // Delayed tasks wait here until the test runs them
+    private final List<Runnable> scheduled = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        source = new FakeMessageSource();
+        store = new InMemoryMessageStore();
+        MessageSync sync = new MessageSync(store, source, Runnable::run, Runnable::run);
+        feeds = new SharedMessageFeeds(sync, new Scheduler() {
+            @Override
+            public void postDelayed(Runnable task, long delayMs) {
+                assertEquals(LINGER_MS, delayMs);
+                scheduled.add(task);
+            }
+
+            @Override
+            public void cancel(Runnable task) {
+                scheduled.remove(task);
+            }
+        }, LINGER_MS);
+    }
+
+    private static ChatMessage message(int i) {
+        ChatMessage message = new ChatMessage("alice", "bob", "message " + i);
+        message.setMessageId("m" + i);
+        message.setChatId(CHAT_ID);
+        message.setTimestamp(1000L + i);
+        return message;
+    }
+
+    private void runScheduled() {
+        List<Runnable> tasks = new ArrayList<>(scheduled);
+        scheduled.clear();
+        for (Runnable task : tasks) task.run();
+    }
+
+    private static MessageSource.Listener collector(List<MessageDelta> deltas) {
+        return new MessageSource.Listener() {
+            @Override
+            public void onDelta(MessageDelta delta) {
+                deltas.add(delta);
+            }
+
+            @Override
+            public void onError(String error) {
+                fail(error);
+            }
+        };
+    }
+
+    @Test
+    public void observersOfOneChatShareOneListener() {
+        for (int i = 0; i < 5; i++) source.add(message(i));
+        List<MessageDelta> first = new ArrayList<>();
+        List<MessageDelta> second = new ArrayList<>();
+
+        feeds.observe(CHAT_ID, PAGE_SIZE, collector(first));
+        feeds.observe(CHAT_ID, PAGE_SIZE, collector(second));
+
+        assertEquals(1, source.listenCount);
+        assertEquals(1, feeds.getMetrics().getActive());
+        assertEquals(1, feeds.getMetrics().getReused());
+        // The late observer is caught up from the feed instead of a second listen
+        assertEquals(5, second.get(0).getAdded().size());
+
+        source.add(message(5));
+        assertEquals("m5", first.get(first.size() - 1).getAdded().get(0).getMessageId());
+        assertEquals("m5", second.get(second.size() - 1).getAdded().get(0).getMessageId());
+    }
+
+    @Test
+    public void listenerLingersAfterLastObserverThenCloses() {
+        MessageSource.Registration first = feeds.observe(CHAT_ID, PAGE_SIZE, collector(new ArrayList<>()));
+        MessageSource.Registration second = feeds.observe(CHAT_ID, PAGE_SIZE, collector(new ArrayList<>()));
+
+        first.remove();
+        assertTrue(scheduled.isEmpty());
+        second.remove();
+        assertTrue(source.isListening());
+        assertEquals(1, scheduled.size());
+
+        runScheduled();
+        assertFalse(source.isListening());
+        assertEquals(0, feeds.getMetrics().getActive());
+        assertEquals(1, feeds.getMetrics().getClosed());
+    }
+
+    @Test
+    public void reopeningWithinLingerReusesWarmListener() {
+        for (int i = 0; i < 3; i++) source.add(message(i));
+        feeds.observe(CHAT_ID, PAGE_SIZE, collector(new ArrayList<>())).remove();
+
+        List<MessageDelta> reopened = new ArrayList<>();
+        feeds.observe(CHAT_ID, PAGE_SIZE, collector(reopened));
+
+        assertTrue(scheduled.isEmpty());
+        assertEquals(1, source.listenCount);
+        assertEquals(3, reopened.get(0).getAdded().size());
+    }
+
+    @Test
+    public void removingTwiceDoesNotReleaseOtherObservers() {
+        MessageSource.Registration first = feeds.observe(CHAT_ID, PAGE_SIZE, collector(new ArrayList<>()));
+        feeds.observe(CHAT_ID, PAGE_SIZE, collector(new ArrayList<>()));
+
+        first.remove();
+        first.remove();
+        assertTrue(scheduled.isEmpty());
+    }
+
+    @Test
+    public void replayIsLimitedToNewestPage() {
+        feeds.observe(CHAT_ID, 10, collector(new ArrayList<>()));
+        for (int i = 0; i < 35; i++) source.add(message(i));
+
+        List<MessageDelta> late = new ArrayList<>();
+        feeds.observe(CHAT_ID, 10, collector(late));
+
+        List<ChatMessage> replayed = late.get(0).getAdded();
+        assertEquals(10, replayed.size());
+        assertEquals("m25", replayed.get(0).getMessageId());
+        assertEquals("m34", replayed.get(9).getMessageId());
+    }
+
+    @Test
+    public void largerPageSizeGetsItsOwnFullPage() {
+        // Already on disk from an earlier session
+        List<ChatMessage> history = new ArrayList<>();
+        for (int i = 0; i < 35; i++) {
+            source.add(message(i));
+            history.add(message(i));
+        }
+        store.apply(CHAT_ID, MessageDelta.ofAdded(history));
+        List<MessageDelta> small = new ArrayList<>();
+        List<MessageDelta> large = new ArrayList<>();
+
+        feeds.observe(CHAT_ID, 10, collector(small));
+        feeds.observe(CHAT_ID, 30, collector(large));
+
+        assertEquals(2, source.listenCount);
+        assertEquals(10, small.get(0).getAdded().size());
+        List<ChatMessage> page = large.get(0).getAdded();
+        assertEquals(30, page.size());
+        assertEquals("m5", page.get(0).getMessageId());
+
+        // A second observer of the same size still shares
+        feeds.observe(CHAT_ID, 30, collector(new ArrayList<>()));
+        assertEquals(2, source.listenCount);
+    }
+
+    @Test
+    public void listenerErrorDropsFeedSoNextObserverReopens() {
+        List<String> errors = new ArrayList<>();
+        MessageSource.Registration first = feeds.observe(CHAT_ID, PAGE_SIZE, new MessageSource.Listener() {
+            @Override
+            public void onDelta(MessageDelta delta) {
+            }
+
+            @Override
+            public void onError(String error) {
+                errors.add(error);
+            }
+        });
+
+        source.fail("PERMISSION_DENIED");
+        assertEquals(1, errors.size());
+        assertEquals(0, feeds.getMetrics().getActive());
+        first.remove();
+        assertTrue(scheduled.isEmpty());
+
+        source.add(message(0));
+        List<MessageDelta> reopened = new ArrayList<>();
+        feeds.observe(CHAT_ID, PAGE_SIZE, collector(reopened));
+
+        assertEquals(2, source.listenCount);
+        assertTrue(source.isListening());
+        assertEquals("m0", reopened.get(0).getAdded().get(0).getMessageId());
+    }
+
+    @Test
+    public void replayOrdersSameMillisecondByMessageId() {
+        feeds.observe(CHAT_ID, PAGE_SIZE, collector(new ArrayList<>()));
+        for (String id : new String[]{"m3", "m1", "m2"}) {
+            ChatMessage message = message(0);
+            message.setMessageId(id);
+            source.add(message);
+        }
+
+        List<MessageDelta> late = new ArrayList<>();
+        feeds.observe(CHAT_ID, PAGE_SIZE, collector(late));
+
+        List<ChatMessage> replayed = late.get(0).getAdded();
+        assertEquals("m1", replayed.get(0).getMessageId());
+        assertEquals("m2", replayed.get(1).getMessageId());
+        assertEquals("m3", replayed.get(2).getMessageId());
+    }
+
+    @Test
+    public void closeAllDetachesImmediately() {
+        feeds.observe(CHAT_ID, PAGE_SIZE, collector(new ArrayList<>()));
+        feeds.closeAll();
+
+        assertFalse(source.isListening());
+        assertEquals(0, feeds.getMetrics().getActive());
+    }
+}
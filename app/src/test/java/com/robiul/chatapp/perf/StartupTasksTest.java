@@ -0,0 +1,128 @@
+package com.robiul.chatapp.perf;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StartupTasksTest {
+    // Posted work waits here until the test runs it
+    private final List<Runnable> mainQueue = new ArrayList<>();
+    private final List<Runnable> backgroundQueue = new ArrayList<>();
+    private final List<String> ran = new ArrayList<>();
+    private final List<StartupTasks.Report> reports = new ArrayList<>();
+    private long now = 0;
+    private StartupTasks startup;
+
+    @Before
+    public void setUp() {
+        startup = new StartupTasks(mainQueue::add, backgroundQueue::add, () -> now, new StartupTasks.Listener() {
+            @Override
+            public void onTaskStarted(String name) {
+            }
+
+            @Override
+            public void onTaskFinished(String name) {
+            }
+
+            @Override
+            public void onComplete(StartupTasks.Report report) {
+                reports.add(report);
+            }
+        });
+    }
+
+    private Runnable task(String name, long durationMs) {
+        return () -> {
+            ran.add(name);
+            now += durationMs;
+        };
+    }
+
+    private static void drain(List<Runnable> queue) {
+        List<Runnable> tasks = new ArrayList<>(queue);
+        queue.clear();
+        for (Runnable task : tasks) task.run();
+    }
+
+    @Test
+    public void onlyCriticalTasksRunBeforeFirstFrame() {
+        startup.add("views", StartupTasks.Kind.CRITICAL, task("views", 5))
+                .add("token", StartupTasks.Kind.AFTER_FIRST_FRAME, task("token", 3))
+                .add("topics", StartupTasks.Kind.BACKGROUND, task("topics", 7))
+                .add("inbox", StartupTasks.Kind.CRITICAL, task("inbox", 10));
+
+        startup.start();
+        assertEquals(2, ran.size());
+        assertEquals("views", ran.get(0));
+        assertEquals("inbox", ran.get(1));
+        assertEquals(1, backgroundQueue.size());
+        assertTrue(mainQueue.isEmpty());
+
+        startup.onFirstFrame();
+        assertEquals(1, mainQueue.size());
+        drain(mainQueue);
+        drain(backgroundQueue);
+
+        assertEquals(4, ran.size());
+        assertEquals(1, reports.size());
+        StartupTasks.Report report = reports.get(0);
+        assertEquals(15, report.firstFrameMs);
+        assertEquals(15, report.criticalMs());
+        assertEquals(25, report.totalMs);
+        assertEquals(4, report.timings.size());
+        assertEquals("views", report.timings.get(0).name);
+    }
+
+    @Test
+    public void reportWaitsForFirstFrame() {
+        startup.add("topics", StartupTasks.Kind.BACKGROUND, task("topics", 1));
+        startup.start();
+        drain(backgroundQueue);
+        assertTrue(reports.isEmpty());
+
+        startup.onFirstFrame();
+        startup.onFirstFrame();
+        assertEquals(1, reports.size());
+    }
+
+    @Test
+    public void failingDeferredTaskIsRecordedAndOthersStillRun() {
+        startup.add("battery", StartupTasks.Kind.AFTER_FIRST_FRAME, () -> {
+            throw new IllegalStateException("no power service");
+        }).add("receiver", StartupTasks.Kind.AFTER_FIRST_FRAME, task("receiver", 1));
+
+        startup.start();
+        startup.onFirstFrame();
+        drain(mainQueue);
+
+        assertEquals(1, ran.size());
+        assertEquals(1, reports.size());
+        assertNotNull(reports.get(0).timings.get(0).error);
+        assertTrue(reports.get(0).toString().contains("FAILED"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failingCriticalTaskPropagates() {
+        startup.add("views", StartupTasks.Kind.CRITICAL, () -> {
+            throw new IllegalStateException("missing view");
+        });
+        startup.start();
+    }
+
+    @Test
+    public void cancelDropsQueuedTasksAndReport() {
+        startup.add("token", StartupTasks.Kind.AFTER_FIRST_FRAME, task("token", 1));
+        startup.start();
+        startup.onFirstFrame();
+
+        startup.cancel();
+        drain(mainQueue);
+
+        assertTrue(ran.isEmpty());
+        assertTrue(reports.isEmpty());
+    }
+}
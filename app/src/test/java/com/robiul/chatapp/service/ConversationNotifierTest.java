@@ -0,0 +1,217 @@
+package com.robiul.chatapp.service;
+
+import com.robiul.chatapp.data.Scheduler;
+import com.robiul.chatapp.models.ChatMessage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ConversationNotifierTest {
+    private static final long COALESCE_MS = ConversationNotifier.DEFAULT_COALESCE_MS;
+
+    private ConversationNotifier notifier;
+    // Delayed tasks wait here until the test runs them
+    private final List<Runnable> scheduled = new ArrayList<>();
+    private final List<ConversationNotifier.Snapshot> posted = new ArrayList<>();
+    private final List<String> cancelled = new ArrayList<>();
+    private int lastSummary = -1;
+    private int summaries = 0;
+
+    @Before
+    public void setUp() {
+        notifier = new ConversationNotifier(new Scheduler() {
+            @Override
+            public void postDelayed(Runnable task, long delayMs) {
+                assertEquals(COALESCE_MS, delayMs);
+                scheduled.add(task);
+            }
+
+            @Override
+            public void cancel(Runnable task) {
+                scheduled.remove(task);
+            }
+        }, COALESCE_MS, new ConversationNotifier.Poster() {
+            @Override
+            public void post(ConversationNotifier.Snapshot conversation) {
+                posted.add(conversation);
+            }
+
+            @Override
+            public void postSummary(int conversations) {
+                summaries++;
+                lastSummary = conversations;
+            }
+
+            @Override
+            public void cancel(String chatId) {
+                cancelled.add(chatId);
+            }
+        });
+    }
+
+    private static ChatMessage message(String sender, int i) {
+        ChatMessage message = new ChatMessage(sender, "me", "message " + i);
+        message.setMessageId(sender + "-m" + i);
+        message.setChatId(sender + "_me");
+        message.setTimestamp(1000L + i);
+        return message;
+    }
+
+    private void runScheduled() {
+        List<Runnable> tasks = new ArrayList<>(scheduled);
+        scheduled.clear();
+        for (Runnable task : tasks) task.run();
+    }
+
+    @Test
+    public void burstIsPostedOncePerConversation() {
+        for (int i = 0; i < 5; i++) notifier.onMessage(message("alice", i), "Alice");
+        for (int i = 0; i < 3; i++) notifier.onMessage(message("bob", i), "Bob");
+
+        assertEquals(1, scheduled.size());
+        assertTrue(posted.isEmpty());
+        runScheduled();
+
+        assertEquals(2, posted.size());
+        assertEquals("alice_me", posted.get(0).chatId);
+        assertEquals("Alice", posted.get(0).title);
+        assertEquals(5, posted.get(0).messages.size());
+        assertEquals(3, posted.get(1).messages.size());
+        assertEquals(2, lastSummary);
+    }
+
+    @Test
+    public void duplicatePushIsDropped() {
+        assertTrue(notifier.onMessage(message("alice", 1), "Alice"));
+        assertFalse(notifier.onMessage(message("alice", 1), "Alice"));
+        runScheduled();
+        // Redelivered after the first post
+        assertFalse(notifier.onMessage(message("alice", 1), "Alice"));
+
+        assertTrue(scheduled.isEmpty());
+        assertEquals(1, posted.size());
+        assertEquals(1, posted.get(0).messages.size());
+        assertEquals(2, notifier.getDuplicates());
+    }
+
+    @Test
+    public void conversationKeepsNewestMessagesInOrder() {
+        // Out of order, and more than a notification shows
+        for (int i = ConversationNotifier.MAX_MESSAGES + 4; i > 0; i--) {
+            notifier.onMessage(message("alice", i), "Alice");
+        }
+        notifier.onMessage(message("alice", 100), "Alice");
+        runScheduled();
+
+        List<ChatMessage> shown = posted.get(0).messages;
+        assertEquals(ConversationNotifier.MAX_MESSAGES, shown.size());
+        for (int i = 1; i < shown.size(); i++) {
+            assertTrue(shown.get(i - 1).getTimestamp() < shown.get(i).getTimestamp());
+        }
+        assertEquals("message 100", shown.get(shown.size() - 1).getMessage());
+    }
+
+    @Test
+    public void laterPushUpdatesSameConversation() {
+        notifier.onMessage(message("alice", 1), "Alice");
+        runScheduled();
+        notifier.onMessage(message("alice", 2), "Alice");
+        runScheduled();
+
+        assertEquals(2, posted.size());
+        assertEquals(posted.get(0).chatId, posted.get(1).chatId);
+        assertEquals(2, posted.get(1).messages.size());
+    }
+
+    @Test
+    public void clearCancelsConversationAndPendingPost() {
+        notifier.onMessage(message("alice", 1), "Alice");
+        notifier.onMessage(message("bob", 1), "Bob");
+        runScheduled();
+        notifier.onMessage(message("alice", 2), "Alice");
+
+        notifier.clear("alice_me");
+        runScheduled();
+
+        assertEquals(2, posted.size());
+        assertEquals(1, cancelled.size());
+        assertEquals("alice_me", cancelled.get(0));
+        assertEquals(1, lastSummary);
+
+        // Clearing a chat with nothing shown does nothing
+        notifier.clear("carol_me");
+        assertEquals(1, cancelled.size());
+    }
+
+    @Test
+    public void pushAfterDismissStartsFreshHistory() {
+        notifier.onMessage(message("alice", 1), "Alice");
+        notifier.onMessage(message("alice", 2), "Alice");
+        runScheduled();
+
+        // The notification was swiped away
+        notifier.clear("alice_me");
+        notifier.onMessage(message("alice", 3), "Alice");
+        runScheduled();
+
+        List<ChatMessage> shown = posted.get(posted.size() - 1).messages;
+        assertEquals(1, shown.size());
+        assertEquals("message 3", shown.get(0).getMessage());
+    }
+
+    // Replays 1,000 pushes in bursts spread over 20 senders, 1 in 10 of them a
+    // redelivery, and checks that posting is per conversation per burst
+    @Test
+    public void replayOfThousandPushes() {
+        final int pushes = 1000;
+        final int chats = 20;
+        final int burst = 50;
+        int unique = 0;
+        int expectedPosts = 0;
+        Map<String, Integer> perChat = new HashMap<>();
+        List<String> burstChats = new ArrayList<>();
+
+        for (int i = 0; i < pushes; i++) {
+            String sender = "user" + (i * 7 % chats);
+            ChatMessage message;
+            if (i % 10 == 9) {
+                // Redelivery of the previous push
+                String previous = "user" + ((i - 1) * 7 % chats);
+                message = message(previous, perChat.get(previous) - 1);
+            } else {
+                int next = perChat.containsKey(sender) ? perChat.get(sender) : 0;
+                perChat.put(sender, next + 1);
+                message = message(sender, next);
+                unique++;
+                if (!burstChats.contains(sender)) burstChats.add(sender);
+            }
+            notifier.onMessage(message, sender);
+
+            if (i % burst == burst - 1) {
+                expectedPosts += burstChats.size();
+                burstChats.clear();
+                runScheduled();
+            }
+        }
+        runScheduled();
+
+        assertEquals(pushes - unique, notifier.getDuplicates());
+        assertEquals(expectedPosts, notifier.getPosts());
+        assertEquals(expectedPosts, posted.size());
+        assertEquals(pushes / burst, summaries);
+        assertEquals(perChat.size(), lastSummary);
+        for (ConversationNotifier.Snapshot snapshot : posted) {
+            assertTrue(snapshot.messages.size() <= ConversationNotifier.MAX_MESSAGES);
+        }
+
+        // One post per conversation per burst, not per push
+        assertTrue(notifier.getPosts() * burst <= pushes * chats);
+    }
+}
@@ -0,0 +1,156 @@
+package com.robiul.chatapp.service;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TokenSyncTest {
+    private MemoryStore store;
+    // Writes wait here until the test completes them
+    private final List<String> written = new ArrayList<>();
+    private final List<TokenSync.Callback> inFlight = new ArrayList<>();
+    private TokenSync sync;
+
+    private static class MemoryStore implements TokenSync.Store {
+        String syncedHash;
+        String pendingToken;
+
+        @Override
+        public String getSyncedHash() {
+            return syncedHash;
+        }
+
+        @Override
+        public void setSyncedHash(String hash) {
+            syncedHash = hash;
+        }
+
+        @Override
+        public String getPendingToken() {
+            return pendingToken;
+        }
+
+        @Override
+        public void setPendingToken(String token) {
+            pendingToken = token;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        store = new MemoryStore();
+        sync = newSync();
+    }
+
+    // Same disk state, new process
+    private TokenSync newSync() {
+        return new TokenSync(store, (userId, token, callback) -> {
+            written.add(userId + ":" + token);
+            inFlight.add(callback);
+        });
+    }
+
+    private void completeWrites(boolean success) {
+        while (!inFlight.isEmpty()) {
+            TokenSync.Callback callback = inFlight.remove(0);
+            if (success) {
+                callback.onWritten();
+            } else {
+                callback.onFailed("offline");
+            }
+        }
+    }
+
+    @Test
+    public void unchangedTokenIsNotWrittenAgainAcrossLaunches() {
+        sync.sync("alice", "t1");
+        completeWrites(true);
+        assertEquals(1, written.size());
+
+        sync.sync("alice", "t1");
+        TokenSync relaunched = newSync();
+        relaunched.sync("alice", "t1");
+        relaunched.syncPending("alice");
+
+        assertEquals(1, written.size());
+        assertEquals(0, relaunched.getWrites());
+    }
+
+    @Test
+    public void concurrentCallsCoalesceIntoOneWrite() {
+        // Launch fetch, pending token and onNewToken all racing
+        for (int i = 0; i < 5; i++) sync.sync("alice", "t1");
+        completeWrites(true);
+
+        assertEquals(1, written.size());
+        assertTrue(sync.getStats().contains("coalesced=4"));
+    }
+
+    @Test
+    public void onlyLatestTokenIsWrittenAfterInFlightWrite() {
+        sync.sync("alice", "t1");
+        sync.sync("alice", "t2");
+        sync.sync("alice", "t3");
+        completeWrites(true);
+
+        assertEquals(2, written.size());
+        assertEquals("alice:t3", written.get(1));
+
+        sync.sync("alice", "t3");
+        assertEquals(2, written.size());
+    }
+
+    @Test
+    public void tokenSeenWhileSignedOutIsWrittenOnSignIn() {
+        sync.sync(null, "t1");
+        assertTrue(written.isEmpty());
+        assertEquals("t1", store.pendingToken);
+
+        sync.syncPending("alice");
+        completeWrites(true);
+
+        assertEquals(1, written.size());
+        assertNull(store.pendingToken);
+    }
+
+    @Test
+    public void failedWriteStaysPendingAndIsRetried() {
+        sync.sync("alice", "t1");
+        completeWrites(false);
+        assertEquals("t1", store.pendingToken);
+        assertNull(store.syncedHash);
+
+        newSync().syncPending("alice");
+        completeWrites(true);
+
+        assertEquals(2, written.size());
+        assertNull(store.pendingToken);
+    }
+
+    @Test
+    public void differentUserOnSameDeviceIsWritten() {
+        sync.sync("alice", "t1");
+        completeWrites(true);
+        sync.sync("bob", "t1");
+
+        assertEquals(2, written.size());
+        assertEquals("bob:t1", written.get(1));
+    }
+
+    @Test
+    public void signOutForcesNextWriteEvenIfWriteWasInFlight() {
+        sync.sync("alice", "t1");
+        sync.reset();
+        // Signing straight back in while the first write is still out
+        sync.sync("alice", "t1");
+        completeWrites(true);
+
+        assertEquals(2, written.size());
+        sync.sync("alice", "t1");
+        assertEquals(2, written.size());
+    }
+}
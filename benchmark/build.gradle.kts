@@ -0,0 +1,62 @@
+import groovy.json.JsonSlurper
+
+plugins {
+    alias(libs.plugins.android.test)
+    alias(libs.plugins.baselineprofile)
+}
+
+// The benchmarks seed the emulators through their own Firebase client, set up like the app's
+@Suppress("UNCHECKED_CAST")
+val googleServices = JsonSlurper().parse(rootProject.file("app/google-services.json")) as Map<String, Any>
+val projectInfo = googleServices["project_info"] as Map<String, Any>
+val appClient = (googleServices["client"] as List<Map<String, Any>>).first {
+    ((it["client_info"] as Map<String, Any>)["android_client_info"] as Map<String, Any>)["package_name"] == "com.robiul.chatapp"
+}
+val firebaseAppId = (appClient["client_info"] as Map<String, Any>)["mobilesdk_app_id"] as String
+val firebaseApiKey = ((appClient["api_key"] as List<Map<String, Any>>).first())["current_key"] as String
+
+android {
+    namespace = "com.robiul.chatapp.benchmark"
+    compileSdk {
+        version = release(36)
+    }
+
+    defaultConfig {
+        // Baseline Profile collection needs API 28+
+        minSdk = 28
+        targetSdk = 36
+
+        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+        buildConfigField("String", "FIREBASE_PROJECT_ID", "\"${projectInfo["project_id"]}\"")
+        buildConfigField("String", "FIREBASE_APP_ID", "\"$firebaseAppId\"")
+        buildConfigField("String", "FIREBASE_API_KEY", "\"$firebaseApiKey\"")
+    }
+
+    buildFeatures {
+        buildConfig = true
+    }
+
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_11
+        targetCompatibility = JavaVersion.VERSION_11
+    }
+
+    targetProjectPath = ":app"
+    experimentalProperties["android.experimental.self-instrumenting"] = true
+}
+
+baselineProfile {
+    useConnectedDevices = true
+}
+
+dependencies {
+    implementation(libs.ext.junit)
+    implementation(libs.espresso.core)
+    implementation(libs.uiautomator)
+    implementation(libs.benchmark.macro.junit4)
+
+    // Seeding the Firestore and Auth emulators
+    implementation(platform(libs.firebase.bom))
+    implementation(libs.firebase.auth)
+    implementation(libs.firebase.firestore)
+}
@@ -0,0 +1,62 @@
+package com.robiul.chatapp.benchmark;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.UiDevice;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import kotlin.Unit;
+
+/**
+ * Walks the benchmarked paths (start into the inbox, open the user directory, open
+ * and scroll the long chat) so the classes and methods they use are AOT-compiled
+ * in release builds. Generated with :app:generateReleaseBaselineProfile, which
+ * writes app/src/release/generated/baselineProfiles/baseline-prof.txt.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+    @Rule
+    public BaselineProfileRule rule = new BaselineProfileRule();
+
+    @Before
+    public void setUp() throws Exception {
+        BenchmarkSetup.seed();
+    }
+
+    @Test
+    public void generate() {
+        rule.collect(
+                BenchmarkSetup.PACKAGE,
+                /* maxIterations = */ 15,
+                /* stableIterations = */ 3,
+                /* outputFilePrefix = */ null,
+                /* includeInStartupProfile = */ false,
+                /* strictStability = */ false,
+                /* filterPredicate = */ className -> true,
+                scope -> {
+                    BenchmarkSetup.signIn(scope);
+                    scope.pressHome();
+                    UiDevice device = scope.getDevice();
+
+                    scope.startActivityAndWait(BenchmarkSetup.mainIntent());
+                    BenchmarkSetup.waitForInbox(device);
+
+                    device.findObject(By.res(BenchmarkSetup.PACKAGE, "usersButton")).click();
+                    UsersBenchmark.flingUsers(device);
+                    device.pressBack();
+                    BenchmarkSetup.waitForInbox(device);
+
+                    scope.startActivityAndWait(BenchmarkSetup.chatIntent());
+                    BenchmarkSetup.waitForMessages(device);
+                    ChatBenchmark.flingBack(device, 3);
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -0,0 +1,293 @@
+package com.robiul.chatapp.benchmark;
+
+import android.content.Context;
+import android.content.Intent;
+
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseAuthUserCollisionException;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.MemoryCacheSettings;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared setup for the benchmarks and the Baseline Profile. The Firebase emulators
+ * are seeded once per emulator run with a benchmark user, a 5,000-message chat with
+ * one peer, a small inbox and a few pages of users; the app under test (a
+ * benchmark build, which talks to the emulators) is signed in as that user.
+ *
+ *   firebase emulators:exec --only firestore,auth,database \
+ *       "./gradlew :benchmark:connectedBenchmarkReleaseAndroidTest"
+ *   firebase emulators:exec --only firestore,auth,database \
+ *       "./gradlew :app:generateReleaseBaselineProfile"
+ */
+final class BenchmarkSetup {
+    static final String PACKAGE = "com.robiul.chatapp";
+    static final String PEER_ID = "bench_peer";
+    static final String PEER_NAME = "Bench Peer";
+    static final int CHAT_MESSAGES = 5000;
+    static final int INBOX_CHATS = 20;
+    static final int DIRECTORY_USERS = 200;
+    static final long UI_TIMEOUT_MS = 15_000;
+
+    private static final String EMAIL = "bench@example.com";
+    private static final String PASSWORD = "benchmark-password";
+    // Bump when the seeded data changes so emulators seeded by an older run are redone
+    private static final long SEED_VERSION = 1;
+    // The host machine as seen from an Android emulator
+    private static final String EMULATOR_HOST = "10.0.2.2";
+    private static final int FIRESTORE_PORT = 8080;
+    private static final int AUTH_PORT = 9099;
+    private static final long TIMEOUT_S = 120;
+
+    private static String userId;
+    private static boolean appSignedIn = false;
+
+    private BenchmarkSetup() {}
+
+    // Seeds the emulators if this run hasn't yet; returns the benchmark user's id
+    static synchronized String seed() throws Exception {
+        if (userId != null) return userId;
+
+        FirebaseApp app = seedingApp();
+        FirebaseAuth auth = FirebaseAuth.getInstance(app);
+        try {
+            await(auth.createUserWithEmailAndPassword(EMAIL, PASSWORD));
+        } catch (ExecutionException e) {
+            if (!(e.getCause() instanceof FirebaseAuthUserCollisionException)) throw e;
+            await(auth.signInWithEmailAndPassword(EMAIL, PASSWORD));
+        }
+        String me = auth.getCurrentUser().getUid();
+
+        FirebaseFirestore db = FirebaseFirestore.getInstance(app);
+        DocumentReference marker = db.collection("benchmark").document("seed");
+        DocumentSnapshot seeded = await(marker.get());
+        if (!seeded.exists() || !Long.valueOf(SEED_VERSION).equals(seeded.getLong("version"))) {
+            writeSeed(db, me);
+            await(marker.set(singleField("version", SEED_VERSION)));
+        }
+        userId = me;
+        return userId;
+    }
+
+    private static FirebaseApp seedingApp() {
+        String name = "benchmark-seed";
+        for (FirebaseApp app : FirebaseApp.getApps(context())) {
+            if (app.getName().equals(name)) return app;
+        }
+        FirebaseOptions options = new FirebaseOptions.Builder()
+                .setProjectId(BuildConfig.FIREBASE_PROJECT_ID)
+                .setApplicationId(BuildConfig.FIREBASE_APP_ID)
+                .setApiKey(BuildConfig.FIREBASE_API_KEY)
+                .build();
+        FirebaseApp app = FirebaseApp.initializeApp(context(), options, name);
+        FirebaseAuth.getInstance(app).useEmulator(EMULATOR_HOST, AUTH_PORT);
+        FirebaseFirestore db = FirebaseFirestore.getInstance(app);
+        db.useEmulator(EMULATOR_HOST, FIRESTORE_PORT);
+        db.setFirestoreSettings(new FirebaseFirestoreSettings.Builder()
+                .setLocalCacheSettings(MemoryCacheSettings.newBuilder().build())
+                .build());
+        return app;
+    }
+
+    // Same document layout as the app's ChatMessageCodec, UserCodec and MessageBatchWriter
+    private static void writeSeed(FirebaseFirestore db, String me) throws Exception {
+        Batches batches = new Batches(db);
+        long now = System.currentTimeMillis();
+
+        batches.set(db.collection("users").document(me), user(me, "Bench User", EMAIL));
+        batches.set(db.collection("users").document(PEER_ID), user(PEER_ID, PEER_NAME, "peer@example.com"));
+        for (int i = 0; i < DIRECTORY_USERS; i++) {
+            String id = String.format(Locale.US, "bench_user_%03d", i);
+            batches.set(db.collection("users").document(id),
+                    user(id, "Directory User " + i, id + "@example.com"));
+        }
+
+        // The long chat, alternating senders, newest last
+        String chatId = chatId(me, PEER_ID);
+        long base = now - CHAT_MESSAGES * 60_000L;
+        Map<String, Object> last = null;
+        for (int m = 0; m < CHAT_MESSAGES; m++) {
+            boolean mine = m % 2 == 0;
+            last = message(chatId, chatId + "_" + m, mine ? me : PEER_ID, mine ? PEER_ID : me,
+                    "Benchmark message " + m + (m % 7 == 0 ? ", a little longer so it wraps onto another line" : ""),
+                    base + m * 60_000L);
+            batches.set(db.collection("messages").document((String) last.get("messageId")), last);
+        }
+        batches.set(db.collection("chats").document(chatId), chat(last, me, "Bench User", PEER_NAME));
+
+        // The rest of the inbox: one message each from directory users, older than the long chat
+        for (int i = 0; i < INBOX_CHATS - 1; i++) {
+            String other = String.format(Locale.US, "bench_user_%03d", i);
+            String otherChatId = chatId(me, other);
+            Map<String, Object> message = message(otherChatId, otherChatId + "_0", other, me,
+                    "Hello from directory user " + i, base - i * 60_000L);
+            batches.set(db.collection("messages").document(otherChatId + "_0"), message);
+            batches.set(db.collection("chats").document(otherChatId),
+                    chat(message, me, "Bench User", "Directory User " + i));
+        }
+        batches.commit();
+    }
+
+    // Same as ChatManager.generateChatId
+    static String chatId(String user1, String user2) {
+        return user1.compareTo(user2) < 0 ? user1 + "_" + user2 : user2 + "_" + user1;
+    }
+
+    private static Map<String, Object> user(String id, String name, String email) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("userId", id);
+        data.put("email", email);
+        data.put("name", name);
+        data.put("profileImage", null);
+        data.put("fcmToken", null);
+        data.put("updatedAt", FieldValue.serverTimestamp());
+        return data;
+    }
+
+    private static Map<String, Object> message(String chatId, String messageId, String senderId,
+                                               String receiverId, String text, long timestamp) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("messageId", messageId);
+        data.put("senderId", senderId);
+        data.put("receiverId", receiverId);
+        data.put("message", text);
+        data.put("timestamp", timestamp);
+        data.put("messageType", "text");
+        data.put("isSeen", true);
+        data.put("chatId", chatId);
+        data.put("syncedAt", FieldValue.serverTimestamp());
+        return data;
+    }
+
+    private static Map<String, Object> chat(Map<String, Object> last, String me, String myName, String otherName) {
+        String sender = (String) last.get("senderId");
+        String receiver = (String) last.get("receiverId");
+        Map<String, Object> names = new HashMap<>();
+        names.put(me, myName);
+        names.put(me.equals(sender) ? receiver : sender, otherName);
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("chatId", last.get("chatId"));
+        data.put("participants", Arrays.asList(sender, receiver));
+        data.put("lastMessage", last.get("message"));
+        data.put("lastMessageTime", last.get("timestamp"));
+        data.put("lastMessageSender", sender);
+        data.put("participantNames", names);
+        return data;
+    }
+
+    private static Map<String, Object> singleField(String field, Object value) {
+        Map<String, Object> data = new HashMap<>();
+        data.put(field, value);
+        return data;
+    }
+
+    // Signs the app in through its login screen, once per run; the session survives process kills
+    static void signIn(MacrobenchmarkScope scope) {
+        if (appSignedIn) return;
+        UiDevice device = scope.getDevice();
+        try {
+            // Keep the battery-optimization and notification prompts out of the measured screens
+            device.executeShellCommand("dumpsys deviceidle whitelist +" + PACKAGE);
+            device.executeShellCommand("pm grant " + PACKAGE + " android.permission.POST_NOTIFICATIONS");
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not prepare " + PACKAGE, e);
+        }
+
+        scope.startActivityAndWait();
+        UiObject2 email = device.wait(Until.findObject(By.res(PACKAGE, "etEmail")), UI_TIMEOUT_MS);
+        if (email == null) throw new IllegalStateException("Login screen did not show");
+        email.setText(EMAIL);
+        device.findObject(By.res(PACKAGE, "etPassword")).setText(PASSWORD);
+        device.findObject(By.res(PACKAGE, "btnLogin")).click();
+        if (!device.wait(Until.hasObject(By.res(PACKAGE, "usersButton")), UI_TIMEOUT_MS)) {
+            throw new IllegalStateException("App did not reach the inbox after signing in");
+        }
+        appSignedIn = true;
+    }
+
+    static Intent mainIntent() {
+        Intent intent = new Intent();
+        intent.setClassName(PACKAGE, PACKAGE + ".MainActivity");
+        return intent;
+    }
+
+    static Intent chatIntent() {
+        Intent intent = new Intent();
+        intent.setClassName(PACKAGE, PACKAGE + ".ChatActivity");
+        intent.putExtra("otherUserId", PEER_ID);
+        intent.putExtra("otherUserName", PEER_NAME);
+        return intent;
+    }
+
+    // Inbox has its first page of conversations
+    static void waitForInbox(UiDevice device) {
+        device.wait(Until.hasObject(By.res(PACKAGE, "conversationName")), UI_TIMEOUT_MS);
+    }
+
+    // The long chat is showing messages
+    static void waitForMessages(UiDevice device) {
+        device.wait(Until.hasObject(By.res(PACKAGE, "messageText")), UI_TIMEOUT_MS);
+    }
+
+    private static Context context() {
+        return InstrumentationRegistry.getInstrumentation().getContext();
+    }
+
+    private static <T> T await(Task<T> task) throws Exception {
+        return Tasks.await(task, TIMEOUT_S, TimeUnit.SECONDS);
+    }
+
+    // Firestore caps a batch at 500 writes
+    private static class Batches {
+        private static final int MAX_WRITES = 500;
+        private final FirebaseFirestore db;
+        private final List<Task<Void>> commits = new ArrayList<>();
+        private WriteBatch batch;
+        private int writes = 0;
+
+        Batches(FirebaseFirestore db) {
+            this.db = db;
+            this.batch = db.batch();
+        }
+
+        void set(DocumentReference document, Map<String, Object> data) {
+            batch.set(document, data);
+            if (++writes == MAX_WRITES) {
+                commits.add(batch.commit());
+                batch = db.batch();
+                writes = 0;
+            }
+        }
+
+        void commit() throws Exception {
+            if (writes > 0) commits.add(batch.commit());
+            await(Tasks.whenAll(commits));
+        }
+    }
+}
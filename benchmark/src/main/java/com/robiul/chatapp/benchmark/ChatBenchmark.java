@@ -0,0 +1,115 @@
+package com.robiul.chatapp.benchmark;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Direction;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * The 5,000-message chat: opening it and scrolling back through it, which pages
+ * older messages in from disk and the emulator as it goes. chat:firstMessages is
+ * ChatActivity's async section from onCreate to the first messages drawn; it is
+ * recorded on API 29 and up.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class ChatBenchmark {
+    private static final int ITERATIONS = 10;
+    // Each fling back loads roughly one more page of history
+    private static final int FLINGS = 8;
+
+    @Rule
+    public MacrobenchmarkRule rule = new MacrobenchmarkRule();
+
+    @Before
+    public void setUp() throws Exception {
+        BenchmarkSetup.seed();
+    }
+
+    @Test
+    public void openChatNoCompilation() {
+        openChat(new CompilationMode.None());
+    }
+
+    @Test
+    public void openChatBaselineProfile() {
+        openChat(new CompilationMode.Partial());
+    }
+
+    @Test
+    public void scrollChatNoCompilation() {
+        scrollChat(new CompilationMode.None());
+    }
+
+    @Test
+    public void scrollChatBaselineProfile() {
+        scrollChat(new CompilationMode.Partial());
+    }
+
+    private void openChat(CompilationMode compilationMode) {
+        rule.measureRepeated(
+                BenchmarkSetup.PACKAGE,
+                Arrays.asList(new StartupTimingMetric(), new FrameTimingMetric(),
+                        new TraceSectionMetric("chat:firstMessages")),
+                compilationMode,
+                StartupMode.WARM,
+                ITERATIONS,
+                scope -> {
+                    BenchmarkSetup.signIn(scope);
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait(BenchmarkSetup.chatIntent());
+                    BenchmarkSetup.waitForMessages(scope.getDevice());
+                    return Unit.INSTANCE;
+                });
+    }
+
+    private void scrollChat(CompilationMode compilationMode) {
+        rule.measureRepeated(
+                BenchmarkSetup.PACKAGE,
+                Collections.singletonList(new FrameTimingMetric()),
+                compilationMode,
+                null,
+                ITERATIONS,
+                scope -> {
+                    BenchmarkSetup.signIn(scope);
+                    scope.startActivityAndWait(BenchmarkSetup.chatIntent());
+                    BenchmarkSetup.waitForMessages(scope.getDevice());
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    flingBack(scope.getDevice(), FLINGS);
+                    return Unit.INSTANCE;
+                });
+    }
+
+    static void flingBack(UiDevice device, int flings) {
+        UiObject2 list = device.findObject(By.res(BenchmarkSetup.PACKAGE, "messagesRecyclerView"));
+        // Keep the gesture clear of the system navigation edges
+        list.setGestureMargin(device.getDisplayWidth() / 5);
+        for (int i = 0; i < flings; i++) {
+            list.fling(Direction.UP);
+            device.waitForIdle();
+        }
+    }
+}
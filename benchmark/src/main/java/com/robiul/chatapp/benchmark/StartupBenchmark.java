@@ -0,0 +1,70 @@
+package com.robiul.chatapp.benchmark;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import kotlin.Unit;
+
+/**
+ * Cold start straight into the inbox for a signed-in user, without and with the
+ * Baseline Profile. Time to full display ends when the first page of
+ * conversations is shown; the startup:* sections are MainActivity's StartupTasks.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+    private static final int ITERATIONS = 10;
+
+    @Rule
+    public MacrobenchmarkRule rule = new MacrobenchmarkRule();
+
+    @Before
+    public void setUp() throws Exception {
+        BenchmarkSetup.seed();
+    }
+
+    @Test
+    public void coldStartNoCompilation() {
+        coldStart(new CompilationMode.None());
+    }
+
+    @Test
+    public void coldStartBaselineProfile() {
+        coldStart(new CompilationMode.Partial());
+    }
+
+    private void coldStart(CompilationMode compilationMode) {
+        rule.measureRepeated(
+                BenchmarkSetup.PACKAGE,
+                Arrays.asList(new StartupTimingMetric(),
+                        new TraceSectionMetric("startup:initViews"),
+                        new TraceSectionMetric("startup:loadConversations")),
+                compilationMode,
+                StartupMode.COLD,
+                ITERATIONS,
+                scope -> {
+                    BenchmarkSetup.signIn(scope);
+                    // Signing in runs the app; the measured start has to be cold
+                    scope.pressHome();
+                    scope.killProcess();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait(BenchmarkSetup.mainIntent());
+                    BenchmarkSetup.waitForInbox(scope.getDevice());
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -0,0 +1,80 @@
+package com.robiul.chatapp.benchmark;
+
+import android.content.Intent;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Direction;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import kotlin.Unit;
+
+// Opening the user directory with the app already running, then paging it in with a fling
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class UsersBenchmark {
+    private static final int ITERATIONS = 10;
+
+    @Rule
+    public MacrobenchmarkRule rule = new MacrobenchmarkRule();
+
+    @Before
+    public void setUp() throws Exception {
+        BenchmarkSetup.seed();
+    }
+
+    @Test
+    public void openUsersNoCompilation() {
+        openUsers(new CompilationMode.None());
+    }
+
+    @Test
+    public void openUsersBaselineProfile() {
+        openUsers(new CompilationMode.Partial());
+    }
+
+    private void openUsers(CompilationMode compilationMode) {
+        rule.measureRepeated(
+                BenchmarkSetup.PACKAGE,
+                Arrays.asList(new StartupTimingMetric(), new FrameTimingMetric()),
+                compilationMode,
+                StartupMode.WARM,
+                ITERATIONS,
+                scope -> {
+                    BenchmarkSetup.signIn(scope);
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    Intent intent = new Intent();
+                    intent.setClassName(BenchmarkSetup.PACKAGE, BenchmarkSetup.PACKAGE + ".UsersActivity");
+                    scope.startActivityAndWait(intent);
+                    flingUsers(scope.getDevice());
+                    return Unit.INSTANCE;
+                });
+    }
+
+    static void flingUsers(UiDevice device) {
+        device.wait(Until.hasObject(By.res(BenchmarkSetup.PACKAGE, "userName")), BenchmarkSetup.UI_TIMEOUT_MS);
+        UiObject2 list = device.findObject(By.res(BenchmarkSetup.PACKAGE, "usersRecyclerView"));
+        // Keep the gesture clear of the system navigation edges
+        list.setGestureMargin(device.getDisplayWidth() / 5);
+        list.fling(Direction.DOWN);
+        device.waitForIdle();
+    }
+}